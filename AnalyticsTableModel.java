@@ -0,0 +1,70 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.List;
+
+// One row per group of a CohortAnalytics result. Numeric columns are numbers so
+// that the table sorts them as such.
+class AnalyticsTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = { "Group", "Count", "Mean %", "Std Dev", "Min %", "P10 %", "Median %",
+            "P90 %", "Max %", "Pass Rate %" };
+
+    private List<CohortAnalytics.Group> groups = Collections.emptyList();
+    private List<CohortAnalytics.Summary> summaries = Collections.emptyList();
+
+    void setResult(SortedMap<CohortAnalytics.Group, CohortAnalytics.Summary> result) {
+        groups = new ArrayList<>(result.keySet());
+        summaries = new ArrayList<>(result.values());
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return groups.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? String.class : column == 1 ? Long.class : Double.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        CohortAnalytics.Summary summary = summaries.get(row);
+        switch (column) {
+            case 0:
+                return groups.get(row).toString();
+            case 1:
+                return summary.getCount();
+            case 2:
+                return round(summary.getMean());
+            case 3:
+                return round(summary.getStandardDeviation());
+            case 4:
+                return round(summary.getMin());
+            case 5:
+                return summary.percentile(10);
+            case 6:
+                return summary.percentile(50);
+            case 7:
+                return summary.percentile(90);
+            case 8:
+                return round(summary.getMax());
+            default:
+                return round(summary.getPassRate());
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
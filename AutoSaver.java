@@ -0,0 +1,173 @@
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+import javax.swing.SwingUtilities;
+
+// Saves in the background a while after the first unsaved edit, or sooner once
+// enough edits have piled up, so a burst of edits costs one save and no edit
+// stays unsaved for much longer than the delay. The journal keeps edits safe
+// from a crash in the meantime; saving keeps it, and the next load, short.
+//
+// Confined to the EDT, like the edits it counts: the timer only posts back to
+// it. Saves go through the `save` callback, which must report back through
+// saveStarted() and saveFinished(), or saveFailed() if the save could not be
+// prepared; saves started elsewhere (File > Save) are reported the same way and
+// count as well. A callback that starts no save (while loading, say) is tried
+// again after the delay.
+class AutoSaver {
+    private final long delayMillis;
+    private final int maxEdits;
+    private final Runnable save;
+    private final LongSupplier bytesWritten;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> scheduled;
+
+    private int pendingEdits; // not yet in a save
+    private int savingEdits; // in saves still being written
+    private int savesInFlight;
+    private long saveStartNanos;
+    private long saveStartBytes;
+    private long lastSaveMillis = -1;
+    private long lastSaveBytes;
+    private long lastSaveTime; // System.currentTimeMillis(), 0 before the first save
+    private int saves;
+    private int failures;
+
+    // A delay of 0 turns autosaving off; saves are then only counted.
+    AutoSaver(long delayMillis, int maxEdits, Runnable save, LongSupplier bytesWritten) {
+        this.delayMillis = delayMillis;
+        this.maxEdits = maxEdits;
+        this.save = save;
+        this.bytesWritten = bytesWritten;
+    }
+
+    void editMade() {
+        pendingEdits++;
+        if (delayMillis <= 0) {
+            return;
+        }
+        if (pendingEdits >= maxEdits) {
+            saveNow();
+        } else {
+            schedule(delayMillis);
+        }
+    }
+
+    // Keeps an earlier deadline: later edits in a burst ride along with the first.
+    private void schedule(long delay) {
+        if (scheduled == null) {
+            scheduled = timer.schedule(() -> SwingUtilities.invokeLater(this::deadlineReached), delay,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void deadlineReached() {
+        scheduled = null;
+        saveNow();
+    }
+
+    // One save at a time; edits made meanwhile are picked up when it finishes.
+    private void saveNow() {
+        if (savesInFlight > 0 || pendingEdits == 0) {
+            return;
+        }
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        save.run();
+        if (savesInFlight == 0 && pendingEdits > 0) {
+            schedule(delayMillis);
+        }
+    }
+
+    // Returns the number of edits the save covers, to be passed to saveFinished().
+    int saveStarted() {
+        int covered = pendingEdits;
+        pendingEdits = 0;
+        savingEdits += covered;
+        if (savesInFlight++ == 0) {
+            saveStartNanos = System.nanoTime();
+            saveStartBytes = bytesWritten.getAsLong();
+        }
+        return covered;
+    }
+
+    void saveFinished(int covered, boolean saved) {
+        savingEdits -= covered;
+        if (--savesInFlight == 0) {
+            lastSaveMillis = (System.nanoTime() - saveStartNanos) / 1_000_000;
+            lastSaveBytes = bytesWritten.getAsLong() - saveStartBytes;
+        }
+        if (saved) {
+            saves++;
+            lastSaveTime = System.currentTimeMillis();
+        } else {
+            // Tried again after the delay rather than straight away.
+            failures++;
+            pendingEdits += covered;
+        }
+        if (pendingEdits > 0 && delayMillis > 0) {
+            if (pendingEdits >= maxEdits && saved) {
+                saveNow();
+            } else {
+                schedule(delayMillis);
+            }
+        }
+    }
+
+    // A save that could not even be started; its edits stay pending and are
+    // tried again after the delay.
+    void saveFailed() {
+        failures++;
+        if (pendingEdits > 0 && delayMillis > 0) {
+            schedule(delayMillis);
+        }
+    }
+
+    // Edits not on disk yet other than in the journal, including those in saves
+    // still being written.
+    int pendingEdits() {
+        return pendingEdits + savingEdits;
+    }
+
+    // Time the last save took to write, -1 before the first.
+    long lastSaveMillis() {
+        return lastSaveMillis;
+    }
+
+    long lastSaveBytes() {
+        return lastSaveBytes;
+    }
+
+    long lastSaveTime() {
+        return lastSaveTime;
+    }
+
+    long bytesWritten() {
+        return bytesWritten.getAsLong();
+    }
+
+    int saves() {
+        return saves;
+    }
+
+    int failures() {
+        return failures;
+    }
+
+    long delayMillis() {
+        return delayMillis;
+    }
+
+    int maxEdits() {
+        return maxEdits;
+    }
+
+    void close() {
+        timer.shutdownNow();
+    }
+}
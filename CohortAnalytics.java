@@ -0,0 +1,233 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Grouped aggregates over every subject row: per subject for difficulty, per
+// semester for trends, per department (and department and semester) for
+// cohort comparisons. The store is cut into slices of students that are
+// aggregated on the common pool, each into its own accumulators, which are then
+// merged pairwise; nothing is shared between threads while rows are read.
+//
+// Reads the rows from the mapped file for students not loaded, so pass a
+// snapshot of a store that may still be edited.
+final class CohortAnalytics {
+    private static final int SLICE = 8192; // students
+    // Percentage histogram in 0.1% buckets over [0, 100], as GradeStatistics.
+    private static final int BUCKETS = 1001;
+
+    enum Grouping {
+        SUBJECT("Subject", false, false, true),
+        SEMESTER("Semester", false, true, false),
+        DEPARTMENT("Department", true, false, false),
+        DEPARTMENT_SEMESTER("Department and semester", true, true, false),
+        SUBJECT_SEMESTER("Subject and semester", false, true, true);
+
+        private final String label;
+        private final boolean byDepartment;
+        private final boolean bySemester;
+        private final boolean bySubject;
+
+        Grouping(String label, boolean byDepartment, boolean bySemester, boolean bySubject) {
+            this.label = label;
+            this.byDepartment = byDepartment;
+            this.bySemester = bySemester;
+            this.bySubject = bySubject;
+        }
+
+        Group group(String department, int semester, String subject) {
+            return new Group(byDepartment ? department : null, bySemester ? semester : 0,
+                    bySubject ? subject : null);
+        }
+
+        // Whether the row belongs to the group, without making its key.
+        boolean contains(Group group, String department, int semester, String subject) {
+            return group != null && (!byDepartment || Objects.equals(department, group.department))
+                    && (!bySemester || semester == group.semester)
+                    && (!bySubject || subject.equals(group.subject));
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // A group's key; the parts the grouping does not use are null or 0. Sorts by
+    // department, then semester, then subject.
+    static final class Group implements Comparable<Group> {
+        private static final Comparator<Group> ORDER = Comparator
+                .comparing((Group group) -> group.department, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingInt(group -> group.semester)
+                .thenComparing(group -> group.subject, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        final String department;
+        final int semester;
+        final String subject;
+        private final int hash;
+
+        Group(String department, int semester, String subject) {
+            this.department = department;
+            this.semester = semester;
+            this.subject = subject;
+            this.hash = (Objects.hashCode(department) * 31 + semester) * 31 + Objects.hashCode(subject);
+        }
+
+        @Override
+        public int compareTo(Group other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Group)) {
+                return false;
+            }
+            Group other = (Group) o;
+            return hash == other.hash && semester == other.semester && Objects.equals(department, other.department)
+                    && Objects.equals(subject, other.subject);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner label = new StringJoiner(" / ");
+            if (department != null) {
+                label.add(department);
+            }
+            if (semester != 0) {
+                label.add("Semester " + semester);
+            }
+            if (subject != null) {
+                label.add(subject);
+            }
+            return label.toString();
+        }
+    }
+
+    // Percentage statistics of one group. Mean and variance are kept with
+    // Welford's update and combined with Chan's formula on merge, so they do not
+    // depend on how the rows were split up beyond rounding.
+    static final class Summary {
+        private long count;
+        private long passes;
+        private double mean;
+        private double squares; // sum of squared deviations from the mean
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final long[] histogram = new long[BUCKETS];
+
+        private void add(double percentage, boolean passed) {
+            count++;
+            if (passed) {
+                passes++;
+            }
+            double delta = percentage - mean;
+            mean += delta / count;
+            squares += delta * (percentage - mean);
+            min = Math.min(min, percentage);
+            max = Math.max(max, percentage);
+            int bucket = percentage > 0 ? (int) Math.min(BUCKETS - 1, percentage * 10) : 0;
+            histogram[bucket]++;
+        }
+
+        private void merge(Summary other) {
+            if (other.count == 0) {
+                return;
+            }
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            squares += other.squares + delta * delta * ((double) count * other.count / total);
+            count = total;
+            passes += other.passes;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                histogram[bucket] += other.histogram[bucket];
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        double getMean() {
+            return mean;
+        }
+
+        // Population standard deviation.
+        double getStandardDeviation() {
+            return count == 0 ? Double.NaN : Math.sqrt(squares / count);
+        }
+
+        double getMin() {
+            return min;
+        }
+
+        double getMax() {
+            return max;
+        }
+
+        double getPassRate() {
+            return (passes * 100.0) / count;
+        }
+
+        // Lower edge of the 0.1% bucket holding the given percentile (0-100).
+        double percentile(double p) {
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += histogram[bucket];
+                if (seen >= rank) {
+                    return bucket / 10.0;
+                }
+            }
+            return 100;
+        }
+    }
+
+    private CohortAnalytics() {
+    }
+
+    // Every group with at least one row, in Group order.
+    static SortedMap<Group, Summary> analyze(StudentStore students, Grouping grouping) {
+        int size = students.size();
+        Map<Group, Summary> groups = IntStream.range(0, (size + SLICE - 1) / SLICE).parallel()
+                .mapToObj(slice -> aggregate(students, grouping, slice * SLICE, Math.min(size, (slice + 1) * SLICE)))
+                .reduce(CohortAnalytics::merge)
+                .orElseGet(HashMap::new);
+        return new TreeMap<>(groups);
+    }
+
+    private static Map<Group, Summary> aggregate(StudentStore students, Grouping grouping, int from, int to) {
+        // Consecutive rows mostly fall in the same group, so the last one is
+        // remembered to skip most of the map lookups.
+        Map<Group, Summary> groups = new HashMap<>();
+        Group[] lastGroup = new Group[1];
+        Summary[] lastSummary = new Summary[1];
+        students.forEachRow(from, to, (index, department, semester, subject, marks, maxMarks, passing) -> {
+            if (!grouping.contains(lastGroup[0], department, semester, subject)) {
+                lastGroup[0] = grouping.group(department, semester, subject);
+                lastSummary[0] = groups.computeIfAbsent(lastGroup[0], k -> new Summary());
+            }
+            double percentage = (marks / maxMarks) * 100;
+            lastSummary[0].add(percentage, percentage >= passing);
+        });
+        return groups;
+    }
+
+    private static Map<Group, Summary> merge(Map<Group, Summary> into, Map<Group, Summary> from) {
+        for (Map.Entry<Group, Summary> entry : from.entrySet()) {
+            Summary summary = into.get(entry.getKey());
+            if (summary == null) {
+                into.put(entry.getKey(), entry.getValue());
+            } else {
+                summary.merge(entry.getValue());
+            }
+        }
+        return into;
+    }
+}
@@ -0,0 +1,221 @@
+import java.util.*;
+import java.util.List;
+
+// Students ranked within their department by CGPA, then overall percentage,
+// then roll number. Each department is a treap whose nodes count their subtree,
+// so a student's rank, the top K and an update after new marks all take
+// logarithmic time. Students without subjects are not ranked.
+class DepartmentRanking {
+    private static final class Node {
+        final String rollNo;
+        final String department;
+        final double cgpa;
+        final double percentage;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(String rollNo, String department, double cgpa, double percentage, int priority) {
+            this.rollNo = rollNo;
+            this.department = department;
+            this.cgpa = cgpa;
+            this.percentage = percentage;
+            this.priority = priority;
+        }
+    }
+
+    private final Map<String, Node> roots = new HashMap<>();
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Random random = new Random();
+
+    // Reads the rows from the store (the mapped file for students not loaded),
+    // so building does not materialize anyone.
+    static DepartmentRanking build(StudentStore students) {
+        int size = students.size();
+        double[] marks = new double[size];
+        double[] maxMarks = new double[size];
+        int[] points = new int[size];
+        int[] counts = new int[size];
+        students.forEachRow((position, department, semester, subject, mark, maxMark, passing) -> {
+            marks[position] += mark;
+            maxMarks[position] += maxMark;
+            points[position] += GradeStore.GRADE_POINTS[GradeStore.SHARED.gradeCode(department,
+                    (mark / maxMark) * 100)];
+            counts[position]++;
+        });
+        DepartmentRanking ranking = new DepartmentRanking();
+        Map<String, List<Node>> byDepartment = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > 0) {
+                Node node = new Node(students.keyAt(i), students.departmentAt(i), (double) points[i] / counts[i],
+                        (marks[i] / maxMarks[i]) * 100, ranking.random.nextInt());
+                ranking.nodes.put(node.rollNo, node);
+                byDepartment.computeIfAbsent(node.department, k -> new ArrayList<>()).add(node);
+            }
+        }
+        for (Map.Entry<String, List<Node>> entry : byDepartment.entrySet()) {
+            List<Node> sorted = entry.getValue();
+            sorted.sort(DepartmentRanking::compare);
+            ranking.roots.put(entry.getKey(), treap(sorted));
+        }
+        return ranking;
+    }
+
+    // Builds the treap of nodes already in order in linear time: each node
+    // becomes the right child of the nearest earlier one with a higher priority,
+    // and takes the ones it passes over as its left subtree.
+    private static Node treap(List<Node> sorted) {
+        Deque<Node> spine = new ArrayDeque<>();
+        for (Node node : sorted) {
+            Node passed = null;
+            while (!spine.isEmpty() && spine.peek().priority < node.priority) {
+                passed = spine.pop();
+            }
+            node.left = passed;
+            if (!spine.isEmpty()) {
+                spine.peek().right = node;
+            }
+            spine.push(node);
+        }
+        Node root = spine.peekLast();
+        updateSizes(root);
+        return root;
+    }
+
+    private static int updateSizes(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        node.size = updateSizes(node.left) + updateSizes(node.right) + 1;
+        return node.size;
+    }
+
+    // Re-ranks the student after its subjects changed.
+    void update(Student student) {
+        Node previous = nodes.remove(student.getRollNo());
+        if (previous != null) {
+            roots.put(previous.department, remove(roots.get(previous.department), previous));
+        }
+        StudentTotals totals = student.totals();
+        if (totals.subjects() > 0) {
+            insert(new Node(student.getRollNo(), student.getDepartment(), totals.cgpa(), totals.percentage(),
+                    random.nextInt()));
+        }
+    }
+
+    private void insert(Node node) {
+        nodes.put(node.rollNo, node);
+        Node[] parts = split(roots.get(node.department), node);
+        roots.put(node.department, merge(merge(parts[0], node), parts[1]));
+    }
+
+    // 1 for the best student of the department, 0 if the student is not ranked.
+    int rank(String rollNo) {
+        Node target = nodes.get(rollNo);
+        if (target == null) {
+            return 0;
+        }
+        int before = 0;
+        Node node = roots.get(target.department);
+        while (node != target) {
+            if (compare(target, node) < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return before + size(node.left) + 1;
+    }
+
+    // Number of ranked students in the department.
+    int size(String department) {
+        return size(roots.get(department));
+    }
+
+    double cgpa(String rollNo) {
+        Node node = nodes.get(rollNo);
+        return node == null ? Double.NaN : node.cgpa;
+    }
+
+    // Roll numbers of the best k students of the department, best first.
+    List<String> top(String department, int k) {
+        List<String> top = new ArrayList<>(Math.min(k, size(department)));
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = roots.get(department);
+        while (top.size() < k && (node != null || !path.isEmpty())) {
+            if (node != null) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = path.pop();
+                top.add(node.rollNo);
+                node = node.right;
+            }
+        }
+        return top;
+    }
+
+    Set<String> departments() {
+        return new TreeSet<>(roots.keySet());
+    }
+
+    private static int compare(Node a, Node b) {
+        int order = Double.compare(b.cgpa, a.cgpa);
+        if (order == 0) {
+            order = Double.compare(b.percentage, a.percentage);
+        }
+        return order != 0 ? order : a.rollNo.compareTo(b.rollNo);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    // The nodes ordered before the key, and the rest.
+    private static Node[] split(Node node, Node key) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(node, key) < 0) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, key);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null || right == null) {
+            return left != null ? left : right;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static Node remove(Node node, Node target) {
+        if (node == target) {
+            return merge(node.left, node.right);
+        }
+        if (compare(target, node) < 0) {
+            node.left = remove(node.left, target);
+        } else {
+            node.right = remove(node.right, target);
+        }
+        return update(node);
+    }
+}
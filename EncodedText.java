@@ -0,0 +1,103 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.*;
+
+// Growable byte buffer that text is encoded into, for writers that reuse their
+// buffers instead of going through toString() and getBytes(). ASCII is copied
+// straight across when the charset encodes it as itself; anything else goes
+// through an encoder that replaces what it cannot map, like getBytes() does.
+final class EncodedText {
+    private final Charset charset;
+    private final boolean asciiCompatible;
+    private CharsetEncoder encoder;
+    private char[] chars = new char[1024];
+    private byte[] bytes;
+    private int length;
+
+    EncodedText(Charset charset, int capacity) {
+        this.charset = charset;
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.bytes = new byte[capacity];
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        char[] ascii = new char[128];
+        byte[] expected = new byte[128];
+        for (int i = 0; i < 128; i++) {
+            ascii[i] = (char) i;
+            expected[i] = (byte) i;
+        }
+        return charset.canEncode() && Arrays.equals(new String(ascii).getBytes(charset), expected);
+    }
+
+    int length() {
+        return length;
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    void append(byte[] encoded) {
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+    }
+
+    void append(StringBuilder text) {
+        int count = text.length();
+        if (chars.length < count) {
+            chars = new char[Math.max(count, chars.length * 2)];
+        }
+        text.getChars(0, count, chars, 0);
+        if (asciiCompatible) {
+            ensureCapacity(count);
+            int i = 0;
+            while (i < count && chars[i] < 0x80) {
+                bytes[length + i] = (byte) chars[i];
+                i++;
+            }
+            if (i == count) {
+                length += count;
+                return;
+            }
+        }
+        encode(count);
+    }
+
+    private void encode(int count) {
+        if (encoder == null) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        encoder.reset();
+        CharBuffer in = CharBuffer.wrap(chars, 0, count);
+        ensureCapacity((int) Math.ceil(count * (double) encoder.averageBytesPerChar()));
+        boolean flushing = false;
+        while (true) {
+            ByteBuffer out = ByteBuffer.wrap(bytes, length, bytes.length - length);
+            CoderResult result = flushing ? encoder.flush(out) : encoder.encode(in, out, true);
+            length = out.position();
+            if (result.isOverflow()) {
+                ensureCapacity(Math.max(16, (int) Math.ceil(in.remaining() * (double) encoder.maxBytesPerChar())));
+            } else if (flushing) {
+                return;
+            } else {
+                flushing = true;
+            }
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (bytes.length - length < extra) {
+            bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+        }
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+}
@@ -0,0 +1,495 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Headless entry point for end-of-term processing: imports CSV/TSV mark sheets
+// into the student store, saves it and optionally exports the reports, without
+// loading AWT.
+//
+//   java GradeBatch [options] sheet.csv...
+//
+// Each line is rollNo,name,department,semester,subject,marks,maxMarks,passing
+// (tab separated for .tsv files). A first line starting with "rollNo" is taken
+// as a header. Name and department only matter for students not yet in the
+// store. Fields may be double-quoted, but not span lines. With --serve the
+// store is then served over HTTP (see GradeServer) until the process is killed.
+class GradeBatch {
+    private static final Path DATA_FILE = Paths.get("student_data.dat");
+    private static final Path LEGACY_DATA_FILE = Paths.get("student_data.ser");
+    private static final Path JOURNAL_FILE = Paths.get("student_data.journal");
+
+    private static final int SEGMENT_SIZE = 8 << 20;
+    private static final int FIELDS = 8;
+
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final int EXIT_REJECTED = 3;
+
+    private Path dataFile = DATA_FILE;
+    private Path journalFile = JOURNAL_FILE;
+    private Path reportFile;
+    private boolean reportByDepartment;
+    private boolean reportGzip;
+    private boolean save = true;
+    private int servePort = -1;
+    private CohortAnalytics.Grouping analytics;
+    private Set<String> departments;
+    private boolean split;
+    private boolean partial;
+    private final List<Path> sheets = new ArrayList<>();
+
+    private StudentStore students;
+    private long rows;
+    private long rejected;
+    private int newStudents;
+
+    GradeBatch() {
+    }
+
+    // Imports into an already open store, e.g. for benchmarks.
+    GradeBatch(StudentStore students) {
+        this.students = students;
+    }
+
+    public static void main(String[] args) {
+        GradeBatch batch = new GradeBatch();
+        if (!batch.parseArguments(args)) {
+            usage();
+            System.exit(EXIT_USAGE);
+        }
+        try {
+            System.exit(batch.run());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java GradeBatch [options] sheet.csv|sheet.tsv...");
+        System.err.println("  --data FILE          student store (default " + DATA_FILE + ")");
+        System.err.println("  --journal FILE       edit journal (default " + JOURNAL_FILE + ")");
+        System.err.println("  --report FILE        export the complete report after importing");
+        System.err.println("  --by-department      one report file per department");
+        System.err.println("  --gzip               compress the report files");
+        System.err.println("  --no-save            import and report without writing the store");
+        System.err.println("  --departments LIST   open only these comma-separated departments of a split store");
+        System.err.println("  --split              save as one file per department, next to the store's manifest");
+        System.err.println("  --analytics GROUPING print grade statistics per subject, semester, department,");
+        System.err.println("                       department-semester or subject-semester");
+        System.err.println("  --serve PORT         then serve the JSON API on 127.0.0.1:PORT");
+        System.err.println("Run with -Dgrades.offheap=true to keep grade rows off the Java heap, and raise");
+        System.err.println("-XX:MaxDirectMemorySize with it if the heap is small (32 bytes per grade row held).");
+    }
+
+    private boolean parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--data":
+                    if (++i == args.length) {
+                        return false;
+                    }
+                    dataFile = Paths.get(args[i]);
+                    break;
+                case "--journal":
+                    if (++i == args.length) {
+                        return false;
+                    }
+                    journalFile = Paths.get(args[i]);
+                    break;
+                case "--report":
+                    if (++i == args.length) {
+                        return false;
+                    }
+                    reportFile = Paths.get(args[i]);
+                    break;
+                case "--by-department":
+                    reportByDepartment = true;
+                    break;
+                case "--gzip":
+                    reportGzip = true;
+                    break;
+                case "--no-save":
+                    save = false;
+                    break;
+                case "--departments":
+                    if (++i == args.length) {
+                        return false;
+                    }
+                    departments = new TreeSet<>();
+                    for (String department : args[i].split(",")) {
+                        departments.add(department.trim());
+                    }
+                    break;
+                case "--split":
+                    split = true;
+                    break;
+                case "--analytics":
+                    if (++i == args.length) {
+                        return false;
+                    }
+                    try {
+                        analytics = CohortAnalytics.Grouping.valueOf(
+                                args[i].toUpperCase(Locale.ROOT).replace('-', '_'));
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                    break;
+                case "--serve":
+                    if (++i == args.length) {
+                        return false;
+                    }
+                    try {
+                        servePort = Integer.parseInt(args[i]);
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        return false;
+                    }
+                    sheets.add(Paths.get(args[i]));
+            }
+        }
+        return !sheets.isEmpty() || reportFile != null || analytics != null || servePort >= 0 || split;
+    }
+
+    int run() throws IOException {
+        long start = System.nanoTime();
+        GradeStore.SHARED.setGradingSchemes(GradingSchemes.load());
+        if (departments != null && Files.exists(journalFile) && Files.size(journalFile) > 0) {
+            System.out.println("The journal holds unsaved edits; opening every department");
+            departments = null;
+        }
+        StudentSaver saver = new StudentSaver(dataFile, departments);
+        students = load(saver);
+        partial = saver.isPartial();
+        if (split) {
+            saver.splitByDepartment();
+        }
+        long loaded = System.nanoTime();
+        System.out.printf("Loaded %d students in %.0f ms%n", students.size(), (loaded - start) / 1e6);
+
+        // Replays edits the GUI has not saved yet; the save below makes them redundant.
+        try (saver; GradeJournal journal = GradeJournal.open(journalFile, students)) {
+            for (Path sheet : sheets) {
+                importSheet(sheet);
+            }
+            long imported = System.nanoTime();
+            double seconds = (imported - loaded) / 1e9;
+            System.out.printf("Imported %d rows (%d new students, %d rejected) in %.0f ms, %.0f rows/sec%n",
+                    rows, newStudents, rejected, seconds * 1000, rows / Math.max(seconds, 1e-9));
+
+            if (save) {
+                long mark = journal.mark();
+                StudentSaver.Save save = saver.prepare(students);
+                saver.write(save, items -> items);
+                journal.truncateBefore(mark);
+                System.out.printf("Saved %d %sstudents to %s in %.0f ms%n", save.size(), save.isFull() ? "" : "changed ",
+                        dataFile, (System.nanoTime() - imported) / 1e6);
+            }
+        }
+
+        if (reportFile != null) {
+            long reportStart = System.nanoTime();
+            ReportExporter exporter = new ReportExporter(reportFile, reportByDepartment, reportGzip);
+            exporter.export(students.scan(), written -> {
+            });
+            System.out.printf("Exported reports for %d students to %s in %.0f ms%n", students.size(),
+                    exporter.getCreatedFiles(), (System.nanoTime() - reportStart) / 1e6);
+        }
+        if (analytics != null) {
+            printAnalytics();
+        }
+        if (servePort >= 0) {
+            serve();
+        }
+        return rejected > 0 ? EXIT_REJECTED : 0;
+    }
+
+    private void printAnalytics() {
+        long start = System.nanoTime();
+        SortedMap<CohortAnalytics.Group, CohortAnalytics.Summary> result = CohortAnalytics.analyze(students, analytics);
+        System.out.printf("%-32s %9s %7s %7s %7s %7s %7s %7s%n", analytics, "count", "mean%", "stddev", "p10%",
+                "median%", "p90%", "pass%");
+        for (Map.Entry<CohortAnalytics.Group, CohortAnalytics.Summary> entry : result.entrySet()) {
+            CohortAnalytics.Summary summary = entry.getValue();
+            System.out.printf("%-32s %9d %7.2f %7.2f %7.1f %7.1f %7.1f %7.2f%n", entry.getKey(), summary.getCount(),
+                    summary.getMean(), summary.getStandardDeviation(), summary.percentile(10),
+                    summary.percentile(50), summary.percentile(90), summary.getPassRate());
+        }
+        System.out.printf("Analyzed %d groups in %.0f ms%n", result.size(), (System.nanoTime() - start) / 1e6);
+    }
+
+    private void serve() throws IOException {
+        GradeStatistics statistics = GradeStatistics.build(students);
+        GradeServer server = new GradeServer(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), servePort),
+                () -> students, () -> statistics, new ReportCache());
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Serving " + students.size() + " students on http://"
+                + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/api/");
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private StudentStore load(StudentSaver saver) throws IOException {
+        if (StudentSaver.exists(dataFile)) {
+            return saver.load();
+        } else if (dataFile.equals(DATA_FILE) && Files.exists(LEGACY_DATA_FILE)) {
+            StudentDataFile.convertLegacy(LEGACY_DATA_FILE, DATA_FILE);
+            return saver.load();
+        }
+        return new StudentStore();
+    }
+
+    // The sheet is cut into segments at line breaks that are parsed on the common
+    // pool, while this thread applies the parsed segments in file order. Parsing
+    // also appends each segment's grade rows to the GradeStore in one batch.
+    void importSheet(Path sheet) throws IOException {
+        char separator = sheet.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<Future<Segment>> pending = new ArrayDeque<>();
+        long line = 0;
+        try (FileChannel channel = FileChannel.open(sheet, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            boolean first = true;
+            while (position < size) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(SEGMENT_SIZE + 1L, size - position));
+                int end = segmentEnd(buffer, position + buffer.limit() == size);
+                boolean header = first;
+                int length = end;
+                pending.add(pool.submit(() -> parse(buffer, length, separator, header)));
+                position += end;
+                first = false;
+                if (pending.size() >= window) {
+                    line = apply(sheet, line, pending.poll());
+                }
+            }
+            while (!pending.isEmpty()) {
+                line = apply(sheet, line, pending.poll());
+            }
+        } finally {
+            for (Future<Segment> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    // Length of the segment up to and including its last line break. A line
+    // longer than a whole segment is an error rather than something to buffer.
+    private static int segmentEnd(MappedByteBuffer buffer, boolean last) throws IOException {
+        int limit = buffer.limit();
+        if (last) {
+            return limit;
+        }
+        for (int i = Math.min(limit, SEGMENT_SIZE) - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        throw new IOException("Line longer than " + SEGMENT_SIZE + " bytes");
+    }
+
+    private long apply(Path sheet, long line, Future<Segment> future) throws IOException {
+        Segment segment;
+        try {
+            segment = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        for (int i = 0; i < segment.errors.size(); i++) {
+            System.err.printf("%s:%d: %s%n", sheet, line + segment.errorLines.get(i), segment.errors.get(i));
+        }
+        rejected += segment.errors.size();
+
+        for (int i = 0; i < segment.count; i++) {
+            Student student = students.get(segment.rollNos[i]);
+            if (student == null) {
+                // The roll number may be taken in a department that was not opened.
+                if (partial) {
+                    System.err.printf("%s: %s: new students need every department open%n", sheet,
+                            segment.rollNos[i]);
+                    rejected++;
+                    continue;
+                }
+                student = new Student(segment.rollNos[i], segment.studentNames[i], segment.departments[i]);
+                students.put(student.getRollNo(), student);
+                newStudents++;
+            }
+            student.addSubject(segment.semesters[i], new Subject(segment.firstRow + i));
+            rows++;
+        }
+        return line + segment.lines;
+    }
+
+    // Parsed rows of one segment, as parallel arrays.
+    private static final class Segment {
+        int count;
+        int lines;
+        int firstRow;
+        String[] rollNos = new String[1024];
+        String[] studentNames = new String[1024];
+        String[] departments = new String[1024];
+        int[] semesters = new int[1024];
+        String[] subjects = new String[1024];
+        double[] marks = new double[1024];
+        double[] maxMarks = new double[1024];
+        double[] passing = new double[1024];
+        final List<Integer> errorLines = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+
+        void grow() {
+            int capacity = rollNos.length * 2;
+            rollNos = Arrays.copyOf(rollNos, capacity);
+            studentNames = Arrays.copyOf(studentNames, capacity);
+            departments = Arrays.copyOf(departments, capacity);
+            semesters = Arrays.copyOf(semesters, capacity);
+            subjects = Arrays.copyOf(subjects, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+            maxMarks = Arrays.copyOf(maxMarks, capacity);
+            passing = Arrays.copyOf(passing, capacity);
+        }
+    }
+
+    private static Segment parse(MappedByteBuffer buffer, int length, char separator, boolean header) {
+        Segment segment = new Segment();
+        byte[] bytes = new byte[length];
+        buffer.get(0, bytes);
+        String[] fields = new String[FIELDS];
+        StringBuilder field = new StringBuilder();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && bytes[end] != '\n') {
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            segment.lines++;
+            String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            start = next;
+            if (line.isBlank() || (header && segment.lines == 1 && line.regionMatches(true, 0, "rollNo", 0, 6))) {
+                continue;
+            }
+            String error = parseLine(line, separator, fields, field, segment);
+            if (error != null) {
+                segment.errorLines.add(segment.lines);
+                segment.errors.add(error);
+            }
+        }
+        segment.firstRow = GradeStore.SHARED.addAll(segment.subjects, segment.marks, segment.maxMarks,
+                segment.passing, segment.count);
+        return segment;
+    }
+
+    // Same checks as the Add Subject form, plus the ones it gets from its selectors.
+    private static String parseLine(String line, char separator, String[] fields, StringBuilder field,
+            Segment segment) {
+        int count = split(line, separator, fields, field);
+        if (count != FIELDS) {
+            return "expected " + FIELDS + " fields, found " + count;
+        }
+        for (int i = 0; i < FIELDS; i++) {
+            fields[i] = fields[i].trim();
+        }
+        if (fields[0].isEmpty()) {
+            return "roll number cannot be empty";
+        }
+        if (fields[4].isEmpty()) {
+            return "subject name cannot be empty";
+        }
+        int semester;
+        double marks;
+        double maxMarks;
+        double passing;
+        try {
+            semester = Integer.parseInt(fields[3]);
+            marks = Double.parseDouble(fields[5]);
+            maxMarks = Double.parseDouble(fields[6]);
+            passing = Double.parseDouble(fields[7]);
+        } catch (NumberFormatException e) {
+            return "invalid number: " + e.getMessage();
+        }
+        if (semester < 1 || semester > 8) {
+            return "semester must be between 1 and 8";
+        }
+
+        int i = segment.count;
+        if (i == segment.rollNos.length) {
+            segment.grow();
+        }
+        segment.rollNos[i] = fields[0];
+        segment.studentNames[i] = fields[1];
+        segment.departments[i] = fields[2];
+        segment.semesters[i] = semester;
+        segment.subjects[i] = fields[4];
+        segment.marks[i] = marks;
+        segment.maxMarks[i] = maxMarks;
+        segment.passing[i] = passing;
+        segment.count++;
+        return null;
+    }
+
+    // Splits into at most fields.length fields and returns how many there were.
+    private static int split(String line, char separator, String[] fields, StringBuilder field) {
+        int count = 0;
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            String value;
+            if (i < length && line.charAt(i) == '"') {
+                field.setLength(0);
+                i++;
+                while (i < length) {
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < length && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                int end = line.indexOf(separator, i);
+                end = end < 0 ? length : end;
+                value = field.append(line, i, end).toString();
+                i = end;
+            } else {
+                int end = line.indexOf(separator, i);
+                end = end < 0 ? length : end;
+                value = line.substring(i, end);
+                i = end;
+            }
+            if (count < fields.length) {
+                fields[count] = value;
+            }
+            count++;
+            if (i >= length) {
+                return count;
+            }
+            i++;
+        }
+    }
+}
@@ -0,0 +1,994 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import javax.swing.JComboBox;
+
+// Stand-alone timing harness: java GradeBenchmark [--max STUDENTS] [scenario...]
+//
+// Scenarios: formats, heap, format, stress, server, regrade, offheap, saves, metrics, analytics, shards, and the pipeline ones (ingest, persistence, report,
+// statistics, ranking, table, selector, viewer), which run at 1k, 10k, 100k ... students up to --max
+// (default 100k; 1M needs about -Xmx4g). Each pipeline scenario reports the
+// median time per operation and the bytes allocated per operation by all threads.
+//
+// The JMH suite in jmh/ (mvn -Pjmh verify) is what to track the pipeline with;
+// this harness supplements it with quick runs and the scenarios it lacks.
+class GradeBenchmark {
+    private static final List<String> PIPELINE = Arrays.asList("ingest", "persistence", "report", "statistics",
+            "ranking", "table", "selector", "viewer");
+    static final int SUBJECTS_PER_STUDENT = 5;
+
+    private static final String[] DEPARTMENTS = { "CSE", "ECE", "EEE", "MECH", "CIVIL", "IT" };
+    private static final String[] SUBJECTS = { "Mathematics", "Physics", "Chemistry", "Programming",
+            "Data Structures", "Algorithms", "Networks", "Databases", "Operating Systems", "Electronics" };
+
+    public static void main(String[] args) throws Exception {
+        Set<String> scenarios = new HashSet<>();
+        int max = 100_000;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--max") && i + 1 < args.length) {
+                max = Integer.parseInt(args[++i]);
+            } else {
+                scenarios.add(args[i]);
+            }
+        }
+        if (scenarios.isEmpty() || scenarios.contains("formats")) {
+            benchmarkFormats();
+        }
+        if (scenarios.isEmpty() || scenarios.contains("heap")) {
+            benchmarkHeap();
+        }
+        if (scenarios.isEmpty() || scenarios.contains("format")) {
+            benchmarkFormat();
+        }
+        if (scenarios.isEmpty() || scenarios.contains("stress")) {
+            if (!stressStore()) {
+                System.exit(1);
+            }
+        }
+        if (scenarios.isEmpty() || scenarios.contains("regrade")) {
+            benchmarkRegrade();
+        }
+        if (scenarios.isEmpty() || scenarios.contains("offheap")) {
+            benchmarkOffHeap();
+        }
+        if (scenarios.isEmpty() || scenarios.contains("saves")) {
+            if (!benchmarkSaves()) {
+                System.exit(1);
+            }
+        }
+        if (scenarios.isEmpty() || scenarios.contains("metrics")) {
+            if (!benchmarkMetrics()) {
+                System.exit(1);
+            }
+        }
+        if (scenarios.isEmpty() || scenarios.contains("analytics")) {
+            if (!benchmarkAnalytics(max)) {
+                System.exit(1);
+            }
+        }
+        if (scenarios.isEmpty() || scenarios.contains("shards")) {
+            benchmarkShards(max);
+        }
+        if (scenarios.isEmpty() || scenarios.contains("server")) {
+            if (!loadServer()) {
+                System.exit(1);
+            }
+        }
+        Set<String> pipeline = new LinkedHashSet<>(PIPELINE);
+        if (!scenarios.isEmpty()) {
+            pipeline.retainAll(scenarios);
+        }
+        if (!pipeline.isEmpty()) {
+            benchmarkPipeline(pipeline, max);
+        }
+    }
+
+    static Map<String, Student> generate(int studentCount, int subjectsPerStudent, long seed) {
+        Random random = new Random(seed);
+        Map<String, Student> students = new HashMap<>(studentCount * 4 / 3 + 1);
+        for (int i = 0; i < studentCount; i++) {
+            String rollNo = String.format("%s%07d", "R", i);
+            Student student = new Student(rollNo, "Student " + i, DEPARTMENTS[i % DEPARTMENTS.length]);
+            for (int j = 0; j < subjectsPerStudent; j++) {
+                int semester = 1 + j % 8;
+                double maxMarks = 100;
+                double marks = Math.round(random.nextDouble() * maxMarks * 100) / 100.0;
+                student.addSubject(semester, new Subject(SUBJECTS[random.nextInt(SUBJECTS.length)], marks, maxMarks, 40));
+            }
+            students.put(rollNo, student);
+        }
+        return students;
+    }
+
+    private static void benchmarkFormats() throws IOException {
+        Path dir = Files.createTempDirectory("grade-bench");
+        Path ser = dir.resolve("students.ser");
+        Path dat = dir.resolve("students.dat");
+        System.out.printf("%-10s %-6s %10s %10s %12s%n", "rows", "format", "save ms", "load ms", "bytes");
+        for (int rows : new int[] { 10_000, 100_000, 1_000_000 }) {
+            Map<String, Student> students = generate(rows / 10, 10, 42);
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                try (ObjectOutputStream oos = new ObjectOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(ser)))) {
+                    oos.writeObject(students);
+                }
+                long saved = System.nanoTime();
+                int loaded = StudentDataFile.readLegacy(ser).size();
+                long end = System.nanoTime();
+                report(round, rows, "ser", saved - start, end - saved, Files.size(ser), loaded);
+
+                start = System.nanoTime();
+                StudentDataFile.write(dat, students.values());
+                saved = System.nanoTime();
+                loaded = StudentDataFile.read(dat).size();
+                end = System.nanoTime();
+                report(round, rows, "dat", saved - start, end - saved, Files.size(dat), loaded);
+
+                start = System.nanoTime();
+                loaded = StudentStore.open(dat).size();
+                end = System.nanoTime();
+                report(round, rows, "mapped", 0, end - start, Files.size(dat), loaded);
+            }
+        }
+        Files.deleteIfExists(ser);
+        Files.deleteIfExists(dat);
+        Files.deleteIfExists(dir);
+    }
+
+    // Retained heap per subject row once a 1M-row dataset is loaded.
+    private static void benchmarkHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long before = usedHeap(runtime);
+        Map<String, Student> students = generate(1_000, 1_000, 7);
+        long after = usedHeap(runtime);
+        System.out.printf("heap per subject row: %.1f bytes (%d students)%n",
+                (after - before) / 1_000_000.0, students.size());
+    }
+
+    private static long usedHeap(Runtime runtime) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Writers append subjects to a few shared students (half of them still in the
+    // mapped file, so materializing races too) and add students under clashing
+    // roll numbers, while readers take snapshots and scan the live store. Every
+    // subject carries its writer and sequence number in name and marks, so
+    // afterwards each one must be found exactly once.
+    private static boolean stressStore() throws Exception {
+        int writers = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int perWriter = 20_000;
+        int shared = 64;
+        int addedKeys = 256;
+
+        Path dir = Files.createTempDirectory("grade-stress");
+        Path dat = dir.resolve("students.dat");
+        Map<String, Student> initial = new HashMap<>();
+        for (int i = 0; i < shared; i++) {
+            initial.put("S" + i, new Student("S" + i, "Shared " + i, DEPARTMENTS[i % DEPARTMENTS.length]));
+        }
+        StudentDataFile.write(dat, initial.values());
+        StudentStore students = StudentStore.open(dat);
+        for (int i = 0; i < shared; i += 2) {
+            students.get("S" + i);
+        }
+
+        java.util.concurrent.atomic.AtomicBoolean done = new java.util.concurrent.atomic.AtomicBoolean();
+        java.util.concurrent.atomic.AtomicReference<Throwable> failure = new java.util.concurrent.atomic.AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int w = 0; w < writers; w++) {
+            String writer = "W" + w;
+            Random random = new Random(w);
+            threads.add(new Thread(() -> {
+                for (int seq = 0; seq < perWriter; seq++) {
+                    String rollNo = random.nextInt(4) == 0 ? "N" + random.nextInt(addedKeys)
+                            : "S" + random.nextInt(shared);
+                    Student student = students.get(rollNo);
+                    if (student == null) {
+                        Student created = new Student(rollNo, "Added " + rollNo, "CSE");
+                        Student existing = students.putIfAbsent(rollNo, created);
+                        student = existing != null ? existing : created;
+                    }
+                    student.addSubject(1 + random.nextInt(8), new Subject(writer, seq, perWriter, 40));
+                }
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                ReportFormatter formatter = new ReportFormatter();
+                StringBuilder text = new StringBuilder();
+                while (!done.get()) {
+                    for (Student student : students.snapshot().scan()) {
+                        text.setLength(0);
+                        formatter.appendExport(text, student);
+                    }
+                    students.forEachRow((index, department, semester, subject, marks, maxMarks, passing) -> {
+                    });
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+            thread.start();
+        }
+        for (Thread thread : threads.subList(0, writers)) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        boolean ok = failure.get() == null;
+        if (!ok) {
+            failure.get().printStackTrace();
+        }
+        BitSet[] seen = new BitSet[writers];
+        for (int w = 0; w < writers; w++) {
+            seen[w] = new BitSet(perWriter);
+        }
+        long total = 0;
+        int duplicates = 0;
+        for (Student student : students.snapshot().scan()) {
+            for (List<Subject> subjects : student.getSemesterSubjects().values()) {
+                for (Subject subject : subjects) {
+                    BitSet bits = seen[Integer.parseInt(subject.getName().substring(1))];
+                    int seq = (int) subject.getMarks();
+                    duplicates += bits.get(seq) ? 1 : 0;
+                    bits.set(seq);
+                    total++;
+                }
+            }
+        }
+        for (int w = 0; w < writers; w++) {
+            ok &= seen[w].cardinality() == perWriter;
+        }
+        Set<Integer> positions = new HashSet<>();
+        for (int i = 0; i < students.size(); i++) {
+            ok &= students.indexOf(students.keyAt(i)) == i && positions.add(i);
+        }
+        ok &= duplicates == 0 && total == (long) writers * perWriter && students.size() <= shared + addedKeys;
+
+        System.out.printf("stress: %s, %d writers x %d subjects in %.0f ms, %d found, %d duplicates, %d students%n",
+                ok ? "OK" : "FAILED", writers, perWriter, nanos / 1e6, total, duplicates, students.size());
+        Files.deleteIfExists(dat);
+        Files.deleteIfExists(dir);
+        return ok;
+    }
+
+    // Grades 10M rows the way Subject used to, with an if/else ladder, then with a
+    // scheme's lookup table, both on one thread over a plain array; then re-grades
+    // a GradeStore of 10M rows spread over the departments, each with its own
+    // scheme, in parallel (about 400 MB of heap).
+    private static void benchmarkRegrade() throws Exception {
+        int rows = 10_000_000;
+        int batch = 100_000;
+        GradeStore store = new GradeStore();
+        Random random = new Random(42);
+        String[] names = new String[batch];
+        double[] marks = new double[batch];
+        double[] maxMarks = new double[batch];
+        double[] passing = new double[batch];
+        double[] percentages = new double[rows];
+        Arrays.fill(maxMarks, 100);
+        Arrays.fill(passing, 40);
+        for (int first = 0; first < rows; first += batch) {
+            for (int i = 0; i < batch; i++) {
+                names[i] = SUBJECTS[random.nextInt(SUBJECTS.length)];
+                marks[i] = Math.round(random.nextDouble() * 10_000) / 100.0;
+                percentages[first + i] = (marks[i] / maxMarks[i]) * 100;
+            }
+            store.addAll(names, marks, maxMarks, passing, batch);
+        }
+        for (int row = 0; row < rows; row++) {
+            store.setDepartment(row, DEPARTMENTS[row % DEPARTMENTS.length]);
+        }
+
+        byte[] grades = new byte[rows];
+        System.out.printf("%-22s %9s %10s %14s %10s%n", "scenario", "rows", "ms/op", "alloc B/op", "alloc MB/s");
+        measure("grade if/else ladder", rows, () -> {
+            for (int i = 0; i < rows; i++) {
+                grades[i] = ladderGrade(percentages[i]);
+            }
+        });
+        byte[] ladder = grades.clone();
+        GradingScheme standard = GradingScheme.STANDARD;
+        measure("grade lookup table", rows, () -> {
+            for (int i = 0; i < rows; i++) {
+                grades[i] = standard.grade(percentages[i]);
+            }
+        });
+        boolean ok = Arrays.equals(ladder, grades);
+
+        Map<String, GradingScheme> byDepartment = new HashMap<>();
+        for (int d = 0; d < DEPARTMENTS.length; d++) {
+            byDepartment.put(DEPARTMENTS[d], new GradingScheme("s" + d, 90 - d, 80 - d, 70 - d, 60 - d, 50 - d));
+        }
+        GradingSchemes[] schemes = { GradingSchemes.STANDARD,
+                GradingSchemes.of(GradingScheme.STANDARD, byDepartment) };
+        int[] next = new int[1];
+        measure("regrade store", rows, () -> store.setGradingSchemes(schemes[next[0]++ % 2]));
+        store.setGradingSchemes(schemes[0]);
+        for (int row = 0; row < rows; row += 997) {
+            ok &= store.gradeCode(row) == ladder[row];
+        }
+        System.out.printf("regrade: %s, %d cores%n", ok ? "grades match the ladder" : "MISMATCH",
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    // Heap size and collector pauses with 20M grade rows held on and off the heap,
+    // while the application churns through short-lived objects, plus what each
+    // costs to scan and re-grade.
+    private static void benchmarkOffHeap() throws Exception {
+        int rows = 20_000_000;
+        int batch = 100_000;
+        System.out.printf("%-9s %10s %8s %12s %12s %10s %10s%n", "backend", "heap MB", "GCs", "GC pause ms",
+                "full GC ms", "scan ms", "regrade ms");
+        for (boolean offHeap : new boolean[] { false, true }) {
+            GradeStore store = new GradeStore(offHeap);
+            Random random = new Random(42);
+            String[] names = new String[batch];
+            double[] marks = new double[batch];
+            double[] maxMarks = new double[batch];
+            double[] passing = new double[batch];
+            Arrays.fill(maxMarks, 100);
+            Arrays.fill(passing, 40);
+            for (int first = 0; first < rows; first += batch) {
+                for (int i = 0; i < batch; i++) {
+                    names[i] = SUBJECTS[random.nextInt(SUBJECTS.length)];
+                    marks[i] = Math.round(random.nextDouble() * 10_000) / 100.0;
+                }
+                store.addAll(names, marks, maxMarks, passing, batch);
+            }
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            long heap = runtime.totalMemory() - runtime.freeMemory();
+
+            long[] before = gcTotals();
+            List<Object> live = new ArrayList<>();
+            long end = System.nanoTime() + 5_000_000_000L;
+            while (System.nanoTime() < end) {
+                // Mostly garbage, with some survivors to promote.
+                for (int i = 0; i < 10_000; i++) {
+                    byte[] garbage = new byte[256];
+                    if (i % 100 == 0) {
+                        live.add(garbage);
+                    }
+                }
+                if (live.size() > 200_000) {
+                    live.clear();
+                }
+            }
+            long[] churned = gcTotals();
+            long fullStart = System.nanoTime();
+            System.gc();
+            long fullGc = System.nanoTime() - fullStart;
+
+            long scanStart = System.nanoTime();
+            double sum = 0;
+            for (int row = 0; row < rows; row++) {
+                sum += store.percentage(row);
+            }
+            long scan = System.nanoTime() - scanStart;
+            long regradeStart = System.nanoTime();
+            store.setGradingSchemes(GradingSchemes.STANDARD);
+            long regrade = System.nanoTime() - regradeStart;
+            System.out.printf("%-9s %10d %8d %12d %12.0f %10.0f %10.0f%s%n", offHeap ? "off-heap" : "heap",
+                    heap >> 20, churned[0] - before[0], churned[1] - before[1], fullGc / 1e6, scan / 1e6,
+                    regrade / 1e6, sum > 0 ? "" : " ");
+        }
+    }
+
+    // Collections and milliseconds spent collecting so far, over all collectors.
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (java.lang.management.GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    // Save latency against the number of students changed since the last save,
+    // next to a full rewrite of the data file, then checks a reload sees it all.
+    private static boolean benchmarkSaves() throws Exception {
+        int studentCount = 500_000;
+        Path dir = Files.createTempDirectory("grade-bench");
+        Path dat = dir.resolve("students.dat");
+        StudentDataFile.write(dat, generate(studentCount, SUBJECTS_PER_STUDENT, 42).values());
+        StudentSaver saver = new StudentSaver(dat);
+        StudentStore students = saver.load();
+        Random random = new Random(7);
+        System.out.printf("%-22s %9s %10s %12s%n", "scenario", "changed", "ms/save", "delta bytes");
+        for (int changed : new int[] { 1, 10, 100, 1_000, 10_000 }) {
+            saver.write(saver.prepare(students), items -> items); // starts the delta over
+            long[] nanos = new long[7];
+            for (int round = 0; round < nanos.length; round++) {
+                for (int i = 0; i < changed; i++) {
+                    students.get(students.keyAt(random.nextInt(studentCount))).addSubject(1 + random.nextInt(8),
+                            new Subject(SUBJECTS[random.nextInt(SUBJECTS.length)], random.nextInt(101), 100, 40));
+                }
+                long start = System.nanoTime();
+                StudentSaver.Save save = saver.prepare(students);
+                saver.write(save, items -> items);
+                nanos[round] = System.nanoTime() - start;
+                if (save.isFull()) {
+                    System.out.println("saves: compacted during the measurement");
+                }
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%-22s %9d %10.2f %12d%n", "differential save", changed, nanos[nanos.length / 2] / 1e6,
+                    Files.size(StudentDeltaFile.pathFor(dat)));
+        }
+        long[] nanos = new long[3];
+        for (int round = 0; round < nanos.length; round++) {
+            long start = System.nanoTime();
+            StudentDataFile.write(dir.resolve("full.dat"), students.snapshot().scan());
+            nanos[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-22s %9d %10.2f%n", "full save", studentCount, nanos[1] / 1e6);
+
+        ReportFormatter formatter = new ReportFormatter();
+        Map<String, String> expected = new HashMap<>();
+        for (Student student : students.loaded()) {
+            expected.put(student.getRollNo(), export(formatter, student));
+        }
+        boolean ok = true;
+        try (StudentSaver reopened = new StudentSaver(dat)) {
+            StudentStore reloaded = reopened.load();
+            ok = reloaded.size() == studentCount;
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                ok &= entry.getValue().equals(export(formatter, reloaded.get(entry.getKey())));
+            }
+        }
+        saver.close();
+        System.out.println("saves: " + (ok ? "reload matches " + expected.size() + " changed students" : "MISMATCH"));
+        return ok;
+    }
+
+    // Cost of timing an operation, and how close the histogram's percentiles come
+    // to the exact ones.
+    private static boolean benchmarkMetrics() throws Exception {
+        Metrics.Timer timer = Metrics.timer("benchmark.span");
+        Metrics.Counter counter = Metrics.counter("benchmark.counter");
+        System.out.printf("%-22s %10s %10s%n", "scenario", "ns/op", "alloc B/op");
+        for (int round = 0; round < 5; round++) {
+            boolean last = round == 4;
+            measureEach("counter increment", last, counter::increment);
+            measureEach("timed span", last, () -> timer.time(counter::increment));
+        }
+
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal around 1 ms, as operation latencies tend to be.
+            values[i] = (long) Math.exp(Math.log(1e6) + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        boolean ok = true;
+        for (double fraction : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long reported = histogram.percentile(fraction);
+            double error = (double) (reported - exact) / exact;
+            ok &= error >= 0 && error <= 1.0 / 16;
+            System.out.printf("p%-5s exact %10d ns, histogram %10d ns (%+.2f%%)%n", fraction * 100, exact, reported,
+                    error * 100);
+        }
+        System.out.println("metrics: " + (ok ? "percentiles within 1/16" : "MISMATCH"));
+        return ok;
+    }
+
+    // Grouped analytics over --max students read from a mapped file, on pools of
+    // 1, 2, 4 ... threads up to the core count, each checked against a plain
+    // single-threaded pass over the rows.
+    private static boolean benchmarkAnalytics(int max) throws Exception {
+        Path dat = Files.createTempFile("grade-bench", ".dat");
+        try {
+            StudentDataFile.write(dat, StudentStore.of(generate(max, 40, 42)).scan());
+            StudentStore students = StudentStore.open(dat);
+            CohortAnalytics.Grouping grouping = CohortAnalytics.Grouping.SUBJECT_SEMESTER;
+
+            Map<String, long[]> counts = new HashMap<>();
+            Map<String, double[]> sums = new HashMap<>();
+            long start = System.nanoTime();
+            students.forEachRow((index, department, semester, subject, marks, maxMarks, passing) -> {
+                String key = subject + "/" + semester;
+                counts.computeIfAbsent(key, k -> new long[1])[0]++;
+                sums.computeIfAbsent(key, k -> new double[1])[0] += (marks / maxMarks) * 100;
+            });
+            System.out.printf("analytics: %d students, %d groups, plain pass %.0f ms%n", max, counts.size(),
+                    (System.nanoTime() - start) / 1e6);
+
+            boolean ok = true;
+            double single = 0;
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    Callable<SortedMap<CohortAnalytics.Group, CohortAnalytics.Summary>> task =
+                            () -> CohortAnalytics.analyze(students, grouping);
+                    SortedMap<CohortAnalytics.Group, CohortAnalytics.Summary> result = null;
+                    long[] nanos = new long[5];
+                    for (int round = 0; round < nanos.length + 2; round++) {
+                        long begin = System.nanoTime();
+                        result = pool.submit(task).get();
+                        if (round >= 2) {
+                            nanos[round - 2] = System.nanoTime() - begin;
+                        }
+                    }
+                    Arrays.sort(nanos);
+                    double median = nanos[nanos.length / 2] / 1e6;
+                    single = threads == 1 ? median : single;
+                    for (Map.Entry<CohortAnalytics.Group, CohortAnalytics.Summary> entry : result.entrySet()) {
+                        String key = entry.getKey().subject + "/" + entry.getKey().semester;
+                        long count = counts.get(key)[0];
+                        double mean = sums.get(key)[0] / count;
+                        ok &= entry.getValue().getCount() == count
+                                && Math.abs(entry.getValue().getMean() - mean) < 1e-9 * Math.max(1, mean);
+                    }
+                    ok &= result.size() == counts.size();
+                    System.out.printf("%2d threads %10.1f ms %6.2fx%n", threads, median, single / median);
+                } finally {
+                    pool.shutdown();
+                }
+                if (threads == cores) {
+                    break;
+                }
+            }
+            System.out.println("analytics: " + (ok ? "groups match the plain pass" : "MISMATCH"));
+            return ok;
+        } finally {
+            Files.deleteIfExists(dat);
+        }
+    }
+
+    // Opening --max students as the GUI does (the store plus statistics, index
+    // and ranking) from one data file on one thread, from one shard per
+    // department in parallel, and from a single department's shard.
+    private static void benchmarkShards(int max) throws Exception {
+        Path dir = Files.createTempDirectory("grade-bench");
+        Path single = dir.resolve("single.dat");
+        Path sharded = dir.resolve("sharded.dat");
+        try {
+            StudentStore generated = StudentStore.of(generate(max, SUBJECTS_PER_STUDENT, 42));
+            StudentDataFile.write(single, generated.scan());
+            StudentDataFile.write(sharded, generated.scan());
+            try (StudentSaver saver = new StudentSaver(sharded)) {
+                StudentStore students = saver.load();
+                saver.splitByDepartment();
+                saver.write(saver.prepare(students), items -> items);
+            }
+
+            System.out.printf("%-22s %9s %10s %14s %10s%n", "scenario", "students", "ms/op", "alloc B/op",
+                    "alloc MB/s");
+            measure("open single", max, () -> {
+                try (StudentSaver saver = new StudentSaver(single)) {
+                    StudentStore students = saver.load();
+                    GradeStatistics.build(students);
+                    StudentIndex.build(students);
+                    DepartmentRanking.build(students);
+                }
+            });
+            measure("open shards", max, () -> openInParallel(new StudentSaver(sharded)));
+            measure("open one department", max,
+                    () -> openInParallel(new StudentSaver(sharded, Collections.singleton(DEPARTMENTS[0]))));
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static void openInParallel(StudentSaver saver) throws IOException {
+        try (saver) {
+            StudentStore students = saver.load();
+            CompletableFuture<GradeStatistics> statistics =
+                    CompletableFuture.supplyAsync(() -> GradeStatistics.build(students));
+            CompletableFuture<StudentIndex> index = CompletableFuture.supplyAsync(() -> StudentIndex.build(students));
+            DepartmentRanking.build(students);
+            statistics.join();
+            index.join();
+        }
+    }
+
+    private static String export(ReportFormatter formatter, Student student) {
+        StringBuilder out = new StringBuilder();
+        formatter.appendExport(out, student);
+        return out.toString();
+    }
+
+    private static byte ladderGrade(double percentage) {
+        if (percentage >= 90)
+            return 0;
+        else if (percentage >= 80)
+            return 1;
+        else if (percentage >= 70)
+            return 2;
+        else if (percentage >= 60)
+            return 3;
+        else if (percentage >= 50)
+            return 4;
+        else
+            return 5;
+    }
+
+    // Clients on virtual threads fetch random students, semesters, reports and
+    // pages of the list from a GradeServer on a loopback port, half of them
+    // revalidating with the ETag of an earlier response. A first round of the
+    // same length warms up the JIT and is not counted.
+    private static boolean loadServer() throws Exception {
+        int clients = 64;
+        long seconds = 10;
+        StudentStore students = StudentStore.of(generate(100_000, SUBJECTS_PER_STUDENT, 42));
+        GradeStatistics statistics = GradeStatistics.build(students);
+        GradeServer server = new GradeServer(
+                new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), 0),
+                () -> students, () -> statistics, new ReportCache());
+        server.start();
+        long[] counts;
+        long nanos;
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/";
+            java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+                    .version(java.net.http.HttpClient.Version.HTTP_1_1).build();
+            requestLoad(client, base, students, clients, seconds);
+            nanos = System.nanoTime();
+            counts = requestLoad(client, base, students, clients, seconds);
+            nanos = System.nanoTime() - nanos;
+        } finally {
+            server.stop();
+        }
+        long requests = counts[0] + counts[1] + counts[2];
+        System.out.printf("server: %d clients, %d requests in %.1f s, %.0f req/s, %d not modified, %d failed%n",
+                clients, requests, nanos / 1e9, requests / (nanos / 1e9), counts[1], counts[2]);
+        return counts[2] == 0 && counts[1] > 0;
+    }
+
+    // Requests answered with content, answered with 304, and failed.
+    private static long[] requestLoad(java.net.http.HttpClient client, String base, StudentStore students,
+            int clients, long seconds) throws InterruptedException {
+        java.util.concurrent.atomic.LongAdder ok = new java.util.concurrent.atomic.LongAdder();
+        java.util.concurrent.atomic.LongAdder notModified = new java.util.concurrent.atomic.LongAdder();
+        java.util.concurrent.atomic.LongAdder failed = new java.util.concurrent.atomic.LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        try (java.util.concurrent.ExecutorService executor =
+                java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                Random random = new Random(c);
+                executor.submit(() -> {
+                    Map<String, String> etags = new HashMap<>();
+                    while (System.nanoTime() < deadline) {
+                        String path;
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                path = "students/" + students.keyAt(random.nextInt(students.size()));
+                                break;
+                            case 1:
+                                path = "students/" + students.keyAt(random.nextInt(students.size()))
+                                        + "/semesters/" + (1 + random.nextInt(8));
+                                break;
+                            case 2:
+                                path = "students/" + students.keyAt(random.nextInt(1000)) + "/report";
+                                break;
+                            default:
+                                path = random.nextBoolean() ? "statistics" : "students?offset="
+                                        + random.nextInt(students.size()) + "&limit=20";
+                        }
+                        java.net.http.HttpRequest.Builder request = java.net.http.HttpRequest.newBuilder(
+                                java.net.URI.create(base + path));
+                        String etag = etags.get(path);
+                        if (etag != null && random.nextBoolean()) {
+                            request.header("If-None-Match", etag);
+                        }
+                        try {
+                            java.net.http.HttpResponse<byte[]> response = client.send(request.build(),
+                                    java.net.http.HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() == 304) {
+                                notModified.increment();
+                            } else if (response.statusCode() == 200 || response.statusCode() == 404) {
+                                ok.increment();
+                                response.headers().firstValue("ETag").ifPresent(tag -> etags.put(path, tag));
+                            } else {
+                                failed.increment();
+                            }
+                        } catch (IOException e) {
+                            failed.increment();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        return new long[] { ok.sum(), notModified.sum(), failed.sum() };
+    }
+
+    // Time and allocation per subject row of the export text: String.format as the
+    // report code used to do it, against ReportFormatter writing into a reused
+    // buffer, and that encoded into a reused EncodedText.
+    private static void benchmarkFormat() {
+        List<Student> students = new ArrayList<>(generate(10_000, 10, 42).values());
+        ReportFormatter formatter = new ReportFormatter();
+        StringBuilder text = new StringBuilder(1 << 12);
+        EncodedText encoded = new EncodedText(java.nio.charset.Charset.defaultCharset(), 1 << 12);
+        System.out.printf("%-22s %10s %10s%n", "formatter", "ns/row", "alloc B/row");
+        for (int round = 0; round < 5; round++) {
+            boolean last = round == 4;
+            formatLines("String.format", students, last, student -> {
+                text.setLength(0);
+                for (List<Subject> subjects : student.getSemesterSubjects().values()) {
+                    for (Subject subject : subjects) {
+                        text.append(String.format("%-20s: %6.2f/%-6.2f (%6.2f%%) - %s - %s%n", subject.getName(),
+                                subject.getMarks(), subject.getMaxMarks(), subject.getPercentage(),
+                                subject.getGrade(), subject.getStatus()));
+                    }
+                }
+            });
+            formatLines("ReportFormatter", students, last, student -> {
+                text.setLength(0);
+                formatter.appendExport(text, student);
+            });
+            formatLines("ReportFormatter+bytes", students, last, student -> {
+                text.setLength(0);
+                formatter.appendExport(text, student);
+                encoded.reset();
+                encoded.append(text);
+            });
+        }
+    }
+
+    private static void formatLines(String name, List<Student> students, boolean print,
+            java.util.function.Consumer<Student> format) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long rows = 0;
+        for (Student student : students) {
+            for (List<Subject> subjects : student.getSemesterSubjects().values()) {
+                rows += subjects.size();
+            }
+        }
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (Student student : students) {
+            format.accept(student);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - bytes;
+        if (print) {
+            System.out.printf("%-22s %10.1f %10.1f%n", name, nanos / (double) rows, allocated / (double) rows);
+        }
+    }
+
+    private static void benchmarkPipeline(Set<String> scenarios, int max) throws Exception {
+        Path dir = Files.createTempDirectory("grade-bench");
+        Path sheet = dir.resolve("sheet.csv");
+        Path dat = dir.resolve("students.dat");
+        Path report = dir.resolve("report.txt");
+        System.out.printf("%-22s %9s %10s %14s %10s%n", "scenario", "students", "ms/op", "alloc B/op",
+                "alloc MB/s");
+        try {
+            for (int size = 1_000; size <= max; size *= 10) {
+                Map<String, Student> generated = generate(size, SUBJECTS_PER_STUDENT, 42);
+                StudentStore heap = StudentStore.of(generated);
+                StudentDataFile.write(dat, heap.scan());
+                StudentStore mapped = StudentStore.open(dat);
+                int students = size;
+
+                if (scenarios.contains("ingest")) {
+                    writeSheet(sheet, heap);
+                    // Every run appends its rows to the shared GradeStore for good.
+                    measure("ingest csv", students, () -> new GradeBatch(new StudentStore()).importSheet(sheet));
+                }
+                if (scenarios.contains("persistence")) {
+                    measure("save dat", students, () -> StudentDataFile.write(dat, heap.scan()));
+                    measure("load mapped", students, () -> StudentStore.open(dat).size());
+                    measure("load materialized", students, () -> StudentDataFile.read(dat));
+                }
+                if (scenarios.contains("report")) {
+                    ReportFormatter formatter = new ReportFormatter();
+                    StringBuilder text = new StringBuilder();
+                    measure("report format", students, () -> {
+                        for (Student student : mapped.scan()) {
+                            text.setLength(0);
+                            formatter.appendExport(text, student);
+                        }
+                    });
+                    measure("report export", students, () -> new ReportExporter(report, false, false)
+                            .export(mapped.scan(), written -> {
+                            }));
+                }
+                if (scenarios.contains("statistics")) {
+                    measure("statistics build", students, () -> GradeStatistics.build(mapped));
+                }
+                if (scenarios.contains("ranking")) {
+                    measure("ranking build", students, () -> DepartmentRanking.build(mapped));
+                    DepartmentRanking ranking = DepartmentRanking.build(heap);
+                    List<Student> sample = new ArrayList<>();
+                    for (int i = 0; i < 1_000; i++) {
+                        sample.add(generated.get(heap.keyAt(i * (students / 1_000))));
+                    }
+                    measure("ranking 1k update+rank", students, () -> {
+                        for (Student student : sample) {
+                            ranking.update(student);
+                            ranking.rank(student.getRollNo());
+                        }
+                    });
+                    measure("ranking top 10", students, () -> ranking.top(DEPARTMENTS[0], 10));
+                }
+                if (scenarios.contains("table")) {
+                    StudentTableModel studentModel = new StudentTableModel(mapped);
+                    measure("student table refresh", students, () -> {
+                        studentModel.setStudents(mapped);
+                        readCells(studentModel);
+                    });
+                    GradesTableModel gradesModel = new GradesTableModel();
+                    measure("grades table refresh", students, () -> {
+                        for (Student student : mapped.scan()) {
+                            for (List<Subject> subjects : student.getSemesterSubjects().values()) {
+                                gradesModel.setSubjects(subjects);
+                                readCells(gradesModel);
+                            }
+                        }
+                    });
+                }
+                if (scenarios.contains("selector")) {
+                    // Adding one student: refilling both combo boxes item by item, as
+                    // before, against one insert into the shared sorted list.
+                    JComboBox<String> refilled = new JComboBox<>();
+                    JComboBox<String> refilledReport = new JComboBox<>();
+                    measure("selector refill", students, () -> {
+                        for (JComboBox<String> selector : Arrays.asList(refilled, refilledReport)) {
+                            selector.removeAllItems();
+                            for (String rollNo : mapped.keySet()) {
+                                selector.addItem(rollNo);
+                            }
+                        }
+                    });
+                    measure("selector list build", students, () -> RollNumberList.build(mapped));
+                    RollNumberList rollNos = RollNumberList.build(mapped);
+                    RollNumberComboBoxModel model = new RollNumberComboBoxModel(rollNos);
+                    JComboBox<String> shared = new JComboBox<>(model);
+                    JComboBox<String> sharedReport = new JComboBox<>(new RollNumberComboBoxModel(rollNos));
+                    int[] added = new int[1];
+                    measure("selector 1k adds", students, () -> {
+                        for (int i = 0; i < 1_000; i++) {
+                            rollNos.add(String.format("S%07d", added[0]++));
+                        }
+                    });
+                    JComboBox.KeySelectionManager keys = model.keySelection();
+                    measure("selector type-ahead", students, () -> keys.selectionForKey('R', model));
+                    if (shared.getItemCount() != sharedReport.getItemCount()
+                            || !"R0000000".equals(shared.getSelectedItem())) {
+                        throw new IllegalStateException("selectors out of step");
+                    }
+                }
+                if (scenarios.contains("viewer")) {
+                    // Showing every student's report: one String of all of them, as
+                    // the text area needed, against the line outline and a page of
+                    // lines rendered on demand, at the top and further down.
+                    ReportFormatter formatter = new ReportFormatter();
+                    measure("viewer full text", students, () -> {
+                        StringBuilder text = new StringBuilder();
+                        for (Student student : mapped.scan()) {
+                            formatter.appendReport(text, student);
+                            text.append('\n');
+                        }
+                        text.toString();
+                    });
+                    ReportCache cache = new ReportCache();
+                    measure("viewer outline", students, () -> ReportLineModel.build(mapped, cache, null));
+                    ReportLineModel lines = ReportLineModel.build(mapped, cache, null);
+                    int[] page = new int[1];
+                    measure("viewer 1k pages", students, () -> {
+                        for (int i = 0; i < 1_000; i++) {
+                            int first = (int) ((long) lines.getSize() * (page[0]++ % 1_000) / 1_000);
+                            for (int line = first; line < Math.min(first + 40, lines.getSize()); line++) {
+                                lines.getElementAt(line);
+                            }
+                        }
+                    });
+                }
+            }
+        } finally {
+            Files.deleteIfExists(sheet);
+            Files.deleteIfExists(dat);
+            Files.deleteIfExists(report);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    static void writeSheet(Path sheet, StudentStore students) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(sheet)) {
+            out.write("rollNo,name,department,semester,subject,marks,maxMarks,passing");
+            out.newLine();
+            for (Student student : students.scan()) {
+                for (Map.Entry<Integer, List<Subject>> entry : student.getSemesterSubjects().entrySet()) {
+                    for (Subject subject : entry.getValue()) {
+                        out.write(student.getRollNo() + "," + student.getName() + "," + student.getDepartment()
+                                + "," + entry.getKey() + "," + subject.getName() + "," + subject.getMarks() + ","
+                                + subject.getMaxMarks() + "," + subject.getPassingPercentage());
+                        out.newLine();
+                    }
+                }
+            }
+        }
+    }
+
+    static void readCells(javax.swing.table.TableModel model) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                model.getValueAt(row, column);
+            }
+        }
+    }
+
+    // A million runs of an operation far too short to time on its own, printed
+    // per run; the earlier rounds warm up the JIT.
+    private static void measureEach(String name, boolean print, Runnable operation) {
+        int runs = 1_000_000;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            operation.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytes;
+        if (print) {
+            System.out.printf("%-22s %10.1f %10.2f%n", name, nanos / (double) runs, allocated / (double) runs);
+        }
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    // Runs the operation as many times again as it is measured to warm up the JIT,
+    // then prints the median time and the average allocation of the measured runs.
+    private static void measure(String scenario, int students, Operation operation) throws Exception {
+        int iterations = Math.max(3, Math.min(20, 200_000 / students));
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long[] nanos = new long[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+            allocated += allocatedBytes() - bytes;
+        }
+        long total = Arrays.stream(nanos).sum();
+        Arrays.sort(nanos);
+        System.out.printf("%-22s %9d %10.2f %14d %10.1f%n", scenario, students, nanos[iterations / 2] / 1e6,
+                allocated / iterations, allocated / 1e6 / (total / 1e9));
+    }
+
+    // Bytes allocated so far by all live threads, including the common pool workers.
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+
+    // The first rounds only warm up the JIT.
+    private static void report(int round, int rows, String format, long saveNanos, long loadNanos,
+            long bytes, int loaded) {
+        if (round == 2) {
+            System.out.printf("%-10d %-6s %10.1f %10.1f %12d%n", rows, format,
+                    saveNanos / 1e6, loadNanos / 1e6, bytes);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+// Append-only log of edits made since the last snapshot. Every record is framed
+// with its length and a CRC so a torn tail left by a crash is detected and dropped.
+// Edits are appended on the EDT while snapshots are written in the background, so
+// the public methods synchronize on the journal.
+//
+// Records are forced to disk in batches: every SYNC_BATCH records, and at most a
+// second after the last one, by a timer if no further edit comes to do it.
+class GradeJournal implements Closeable {
+    private static final byte ADD_STUDENT = 1;
+    private static final byte ADD_SUBJECT = 2;
+    private static final int SYNC_BATCH = 32;
+    private static final long SYNC_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int COMPACT_THRESHOLD = 10_000;
+    private static final ScheduledExecutorService SYNC_TIMER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Path path;
+    private FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+    private int records;
+    private int unsynced;
+    private long lastSync = System.nanoTime();
+    private ScheduledFuture<?> scheduledSync;
+
+    private GradeJournal(Path path, FileChannel channel, int records) {
+        this.path = path;
+        this.channel = channel;
+        this.records = records;
+    }
+
+    // Replays the journal into the given students and returns it opened for appending.
+    static GradeJournal open(Path path, Map<String, Student> students) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int records = 0;
+            long validEnd = 0;
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (true) {
+                header.clear();
+                if (readFully(channel, header, validEnd) < 8) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || validEnd + 8 + length > channel.size()) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, validEnd + 8);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(payload.rewind(), students);
+                validEnd += 8 + length;
+                records++;
+            }
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+            return new GradeJournal(path, channel, records);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    // Records are idempotent against a snapshot that already contains them: a student
+    // that exists is skipped, and a subject carries its position in the semester list.
+    private static void apply(ByteBuffer in, Map<String, Student> students) {
+        byte type = in.get();
+        if (type == ADD_STUDENT) {
+            String rollNo = getString(in);
+            String name = getString(in);
+            String department = getString(in);
+            students.putIfAbsent(rollNo, new Student(rollNo, name, department));
+        } else if (type == ADD_SUBJECT) {
+            String rollNo = getString(in);
+            int semester = in.getInt();
+            int position = in.getInt();
+            String name = getString(in);
+            double marks = in.getDouble();
+            double maxMarks = in.getDouble();
+            double passing = in.getDouble();
+
+            Student student = students.get(rollNo);
+            if (student == null) {
+                return;
+            }
+            List<Subject> subjects = student.getSemesterSubjects()
+                    .getOrDefault(semester, Collections.emptyList());
+            if (subjects.size() == position) {
+                student.addSubject(semester, new Subject(name, marks, maxMarks, passing));
+            }
+        }
+    }
+
+    synchronized void studentAdded(Student student) throws IOException {
+        buffer.clear();
+        buffer.put(ADD_STUDENT);
+        putString(student.getRollNo());
+        putString(student.getName());
+        putString(student.getDepartment());
+        append();
+    }
+
+    synchronized void subjectAdded(String rollNo, int semester, int position, Subject subject) throws IOException {
+        buffer.clear();
+        buffer.put(ADD_SUBJECT);
+        putString(rollNo);
+        ensureCapacity(8);
+        buffer.putInt(semester);
+        buffer.putInt(position);
+        putString(subject.getName());
+        ensureCapacity(24);
+        buffer.putDouble(subject.getMarks());
+        buffer.putDouble(subject.getMaxMarks());
+        buffer.putDouble(subject.getPassingPercentage());
+        append();
+    }
+
+    private void append() throws IOException {
+        buffer.flip();
+        crc.reset();
+        crc.update(buffer.array(), 0, buffer.limit());
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(buffer.limit());
+        header.putInt((int) crc.getValue());
+        header.flip();
+        while (header.hasRemaining() || buffer.hasRemaining()) {
+            channel.write(new ByteBuffer[] { header, buffer });
+        }
+        records++;
+        unsynced++;
+        if (unsynced >= SYNC_BATCH || System.nanoTime() - lastSync >= SYNC_INTERVAL_NANOS) {
+            sync();
+        } else if (scheduledSync == null) {
+            scheduledSync = SYNC_TIMER.schedule(this::syncScheduled, SYNC_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void syncScheduled() {
+        scheduledSync = null;
+        try {
+            if (channel.isOpen()) {
+                sync();
+            }
+        } catch (IOException e) {
+            // Left unsynced: the next append, save or close tries again and reports it.
+        }
+    }
+
+    synchronized void sync() throws IOException {
+        if (unsynced > 0) {
+            channel.force(false);
+            unsynced = 0;
+        }
+        lastSync = System.nanoTime();
+    }
+
+    synchronized boolean needsCompaction() {
+        return records >= COMPACT_THRESHOLD;
+    }
+
+    // Position to pass to truncateBefore() once a snapshot taken after this call
+    // is on disk.
+    synchronized long mark() throws IOException {
+        return channel.position();
+    }
+
+    // Drops the records before the mark, which the snapshot now contains, keeping
+    // edits appended while it was written. The kept tail is written to a new file
+    // that replaces the journal, so a crash here at worst replays records again.
+    synchronized void truncateBefore(long mark) throws IOException {
+        long end = channel.position();
+        if (mark >= end) {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            records = 0;
+            unsynced = 0;
+            return;
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < end - mark) {
+                copied += channel.transferTo(mark + copied, end - mark - copied, out);
+            }
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            unsynced = 0;
+        } finally {
+            // Reopened either way: if the move failed, edits go on being appended
+            // to the old journal rather than to a closed channel.
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            records = countRecords();
+        }
+    }
+
+    private int countRecords() throws IOException {
+        int count = 0;
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (position < channel.size()) {
+            header.clear();
+            readFully(channel, header, position);
+            position += 8 + header.getInt(0);
+            count++;
+        }
+        return count;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduledSync != null) {
+            scheduledSync.cancel(false);
+            scheduledSync = null;
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buffer.remaining() < extra) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// Subject rows by row number: those held in a GradeStore, or one student's rows
+// read in place from a StudentDataFile. A SubjectList's row numbers are only
+// meaningful together with the GradeRows they come from.
+abstract class GradeRows {
+    abstract String name(int row);
+
+    abstract double marks(int row);
+
+    abstract double maxMarks(int row);
+
+    abstract double passingPercentage(int row);
+
+    double percentage(int row) {
+        return (marks(row) / maxMarks(row)) * 100;
+    }
+
+    abstract byte gradeCode(int row);
+
+    abstract byte statusCode(int row);
+}
@@ -0,0 +1,376 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+// Read-only HTTP/JSON API over the student store, one virtual thread per request.
+//
+//   GET /api/students[?offset=&limit=&department=]   roll number, name, department (streamed)
+//   GET /api/students/{rollNo}                       student with every semester
+//   GET /api/students/{rollNo}/semesters/{n}         one semester's subjects
+//   GET /api/students/{rollNo}/report                the Reports tab text
+//   GET /api/statistics                              the Statistics dialog figures
+//
+// ETags come from the store's generation and the student's content stamp, so a
+// matching If-None-Match is answered with 304 before anything is rendered.
+class GradeServer {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Supplier<StudentStore> students;
+    private final Supplier<GradeStatistics> statistics;
+    private final ReportCache reports;
+    // Tells apart ETags from earlier runs, whose stores had the same generations.
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+
+    // The suppliers are read on every request, so a store replaced by loading
+    // is picked up; statistics are read under their own lock.
+    GradeServer(InetSocketAddress address, Supplier<StudentStore> students, Supplier<GradeStatistics> statistics,
+            ReportCache reports) throws IOException {
+        this.students = students;
+        this.statistics = statistics;
+        this.reports = reports;
+        // Headers and body go out in separate writes; with Nagle's algorithm the
+        // body waits for the client's delayed ACK, about 40 ms per request. The
+        // JDK's server reads this process-wide setting once, when the first
+        // server of the process is created, so it is set here unless given on
+        // the command line, and has no effect if a server was created before.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1736220986602789586L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                throw new HttpError(405, "Only GET and HEAD are supported");
+            }
+            String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+            StudentStore store = students.get();
+            if (path.length == 1 && path[0].equals("students")) {
+                listStudents(exchange, store, query(exchange));
+            } else if (path.length == 1 && path[0].equals("statistics")) {
+                sendStatistics(exchange, store);
+            } else if (path.length >= 2 && path[0].equals("students")) {
+                // Not get(), which would keep the student in the store; one that
+                // is not loaded is read in place for this request only.
+                int position = store.indexOf(path[1]);
+                if (position < 0) {
+                    throw new HttpError(404, "No student " + path[1]);
+                }
+                Student student = store.studentAt(position);
+                if (path.length == 2) {
+                    sendStudent(exchange, store, student, null);
+                } else if (path.length == 4 && path[2].equals("semesters")) {
+                    sendStudent(exchange, store, student, parseInt(path[3], "semester"));
+                } else if (path.length == 3 && path[2].equals("report")) {
+                    sendReport(exchange, store, student);
+                } else {
+                    throw new HttpError(404, "Not found");
+                }
+            } else {
+                throw new HttpError(404, "Not found");
+            }
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int equals = pair.indexOf('=');
+                String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+                String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+                parameters.put(key, value);
+            }
+        }
+        return parameters;
+    }
+
+    private static int parseInt(String value, String name) throws HttpError {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new HttpError(400, "Invalid " + name + ": " + value);
+    }
+
+    // True (and the 304 sent) when the client already has this version.
+    private boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        String tag = "\"" + instance + "-" + etag + "\"";
+        exchange.getResponseHeaders().set("ETag", tag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        List<String> matches = exchange.getRequestHeaders().get("If-None-Match");
+        if (matches != null) {
+            for (String header : matches) {
+                for (String candidate : header.split(",")) {
+                    candidate = candidate.trim();
+                    if (candidate.startsWith("W/")) {
+                        candidate = candidate.substring(2);
+                    }
+                    if (candidate.equals(tag) || candidate.equals("*")) {
+                        exchange.sendResponseHeaders(304, -1);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Students are written as they are read, with chunked transfer encoding, so
+    // the whole list never sits in memory.
+    private void listStudents(HttpExchange exchange, StudentStore store, Map<String, String> query)
+            throws IOException, HttpError {
+        int size = store.size();
+        int offset = query.containsKey("offset") ? parseInt(query.get("offset"), "offset") : 0;
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit"), "limit") : Integer.MAX_VALUE;
+        String department = query.get("department");
+        if (notModified(exchange, "s" + store.generation() + "-" + size)) {
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            StringBuilder json = new StringBuilder(256);
+            out.write('[');
+            // Without a filter the offset is a position and nothing needs skipping.
+            int skipped = department == null ? offset : 0;
+            int written = 0;
+            for (int i = department == null ? offset : 0; i < size && written < limit; i++) {
+                if (department != null && !store.departmentAt(i).equalsIgnoreCase(department)) {
+                    continue;
+                }
+                if (skipped++ < offset) {
+                    continue;
+                }
+                json.setLength(0);
+                if (written++ > 0) {
+                    json.append(',');
+                }
+                json.append("{\"rollNo\":");
+                appendString(json, store.keyAt(i));
+                json.append(",\"name\":");
+                appendString(json, store.nameAt(i));
+                json.append(",\"department\":");
+                appendString(json, store.departmentAt(i));
+                json.append('}');
+                out.append(json);
+            }
+            out.write(']');
+        }
+    }
+
+    private void sendStudent(HttpExchange exchange, StudentStore store, Student student, Integer semester)
+            throws IOException, HttpError {
+        Map<Integer, List<Subject>> semesters = student.getSemesterSubjects();
+        if (semester != null && !semesters.containsKey(semester)) {
+            throw new HttpError(404, "No semester " + semester + " for " + student.getRollNo());
+        }
+        if (notModified(exchange, "g" + store.generation() + "-" + student.contentStamp())) {
+            return;
+        }
+        StringBuilder json = new StringBuilder(1024);
+        if (semester != null) {
+            appendSubjects(json, semesters.get(semester));
+        } else {
+            json.append("{\"rollNo\":");
+            appendString(json, student.getRollNo());
+            json.append(",\"name\":");
+            appendString(json, student.getName());
+            json.append(",\"department\":");
+            appendString(json, student.getDepartment());
+            json.append(",\"semesters\":[");
+            boolean first = true;
+            for (Map.Entry<Integer, List<Subject>> entry : semesters.entrySet()) {
+                json.append(first ? "" : ",").append("{\"semester\":").append(entry.getKey()).append(",\"subjects\":");
+                appendSubjects(json, entry.getValue());
+                json.append('}');
+                first = false;
+            }
+            json.append("]}");
+        }
+        send(exchange, "application/json; charset=utf-8", json);
+    }
+
+    private static void appendSubjects(StringBuilder json, List<Subject> subjects) {
+        json.append('[');
+        for (int i = 0; i < subjects.size(); i++) {
+            Subject subject = subjects.get(i);
+            json.append(i > 0 ? ",{\"name\":" : "{\"name\":");
+            appendString(json, subject.getName());
+            json.append(",\"marks\":");
+            appendNumber(json, subject.getMarks());
+            json.append(",\"maxMarks\":");
+            appendNumber(json, subject.getMaxMarks());
+            json.append(",\"passingPercentage\":");
+            appendNumber(json, subject.getPassingPercentage());
+            json.append(",\"percentage\":");
+            appendNumber(json, subject.getPercentage());
+            json.append(",\"grade\":\"").append(subject.getGrade());
+            json.append("\",\"status\":\"").append(subject.getStatus()).append("\"}");
+        }
+        json.append(']');
+    }
+
+    private void sendReport(HttpExchange exchange, StudentStore store, Student student) throws IOException {
+        if (notModified(exchange, "r" + store.generation() + "-" + student.contentStamp())) {
+            return;
+        }
+        send(exchange, "text/plain; charset=utf-8", reports.report(student));
+    }
+
+    private void sendStatistics(HttpExchange exchange, StudentStore store) throws IOException {
+        GradeStatistics current = statistics.get();
+        StringBuilder json = new StringBuilder(2048);
+        synchronized (current) {
+            GradeStatistics.Aggregate total = current.getTotal();
+            if (notModified(exchange, "t" + store.generation() + "-" + System.identityHashCode(current) + "-"
+                    + total.getCount())) {
+                return;
+            }
+            json.append("{\"students\":").append(store.size()).append(",\"total\":");
+            appendAggregate(json, total);
+            json.append(",\"byDepartment\":{");
+            boolean first = true;
+            for (Map.Entry<String, GradeStatistics.Aggregate> entry : current.getByDepartment().entrySet()) {
+                json.append(first ? "" : ",");
+                appendString(json, entry.getKey());
+                json.append(':');
+                appendAggregate(json, entry.getValue());
+                first = false;
+            }
+            json.append("},\"bySemester\":{");
+            first = true;
+            for (Map.Entry<Integer, GradeStatistics.Aggregate> entry : current.getBySemester().entrySet()) {
+                json.append(first ? "\"" : ",\"").append(entry.getKey()).append("\":");
+                appendAggregate(json, entry.getValue());
+                first = false;
+            }
+            json.append("}}");
+        }
+        send(exchange, "application/json; charset=utf-8", json);
+    }
+
+    private static void appendAggregate(StringBuilder json, GradeStatistics.Aggregate aggregate) {
+        json.append("{\"subjects\":").append(aggregate.getCount());
+        json.append(",\"passes\":").append(aggregate.getPasses());
+        json.append(",\"passRate\":");
+        appendNumber(json, aggregate.getPassRate());
+        json.append(",\"averagePercentage\":");
+        appendNumber(json, aggregate.getAveragePercentage());
+        json.append(",\"grades\":{");
+        for (int grade = 0; grade < GradeStore.GRADES.length; grade++) {
+            json.append(grade > 0 ? ",\"" : "\"").append(GradeStore.GRADES[grade]).append("\":")
+                    .append(aggregate.getGradeCount(grade));
+        }
+        json.append("},\"percentiles\":{\"p25\":");
+        appendNumber(json, aggregate.percentile(25));
+        json.append(",\"p50\":");
+        appendNumber(json, aggregate.percentile(50));
+        json.append(",\"p90\":");
+        appendNumber(json, aggregate.percentile(90));
+        json.append("}}");
+    }
+
+    private static void appendNumber(StringBuilder json, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.append("null");
+        } else {
+            json.append(value);
+        }
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void send(HttpExchange exchange, String contentType, CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // Only possible before the response has started; a failure while streaming
+    // just cuts the response short.
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        json.append('}');
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
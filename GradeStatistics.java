@@ -0,0 +1,97 @@
+import java.util.*;
+
+// Running totals over every grade record, kept up to date as subjects are added
+// so that the statistics dialog never has to walk the students. Readers on
+// other threads than the recording one synchronize on the instance.
+class GradeStatistics {
+    // Percentage histogram in 0.1% buckets over [0, 100]; out-of-range values are clamped.
+    private static final int BUCKETS = 1001;
+
+    static class Aggregate {
+        private long count;
+        private long passes;
+        private double percentageSum;
+        private final long[] grades = new long[GradeStore.GRADES.length];
+        private final long[] histogram = new long[BUCKETS];
+
+        private void add(double percentage, byte grade, byte status) {
+            count++;
+            if (status == GradeStore.PASS) {
+                passes++;
+            }
+            percentageSum += percentage;
+            grades[grade]++;
+            int bucket = percentage > 0 ? (int) Math.min(BUCKETS - 1, percentage * 10) : 0;
+            histogram[bucket]++;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getPasses() {
+            return passes;
+        }
+
+        double getPassRate() {
+            return (passes * 100.0) / count;
+        }
+
+        double getAveragePercentage() {
+            return percentageSum / count;
+        }
+
+        long getGradeCount(int grade) {
+            return grades[grade];
+        }
+
+        // Lower edge of the 0.1% bucket holding the given percentile (0-100).
+        double percentile(double p) {
+            long rank = (long) Math.ceil(p / 100.0 * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += histogram[bucket];
+                if (seen >= Math.max(rank, 1)) {
+                    return bucket / 10.0;
+                }
+            }
+            return 100;
+        }
+    }
+
+    private final Aggregate total = new Aggregate();
+    private final Map<String, Aggregate> byDepartment = new TreeMap<>();
+    private final Map<Integer, Aggregate> bySemester = new TreeMap<>();
+
+    static GradeStatistics build(StudentStore students) {
+        GradeStatistics statistics = new GradeStatistics();
+        students.forEachRow((index, department, semester, subject, marks, maxMarks, passing) ->
+                statistics.record(department, semester, marks, maxMarks, passing));
+        return statistics;
+    }
+
+    synchronized void record(String department, int semester, Subject subject) {
+        record(department, semester, subject.getMarks(), subject.getMaxMarks(), subject.getPassingPercentage());
+    }
+
+    private void record(String department, int semester, double marks, double maxMarks, double passing) {
+        double percentage = (marks / maxMarks) * 100;
+        byte grade = GradeStore.SHARED.gradeCode(department, percentage);
+        byte status = percentage >= passing ? GradeStore.PASS : GradeStore.FAIL;
+        total.add(percentage, grade, status);
+        byDepartment.computeIfAbsent(department, k -> new Aggregate()).add(percentage, grade, status);
+        bySemester.computeIfAbsent(semester, k -> new Aggregate()).add(percentage, grade, status);
+    }
+
+    Aggregate getTotal() {
+        return total;
+    }
+
+    Map<String, Aggregate> getByDepartment() {
+        return Collections.unmodifiableMap(byDepartment);
+    }
+
+    Map<Integer, Aggregate> getBySemester() {
+        return Collections.unmodifiableMap(bySemester);
+    }
+}
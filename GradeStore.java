@@ -0,0 +1,370 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Grade records held column-wise in primitive chunks. A Subject is a flyweight
+// holding only its row number here; the percentage is derived from the marks,
+// grade and status are byte codes and subject names are interned to ids. Rows
+// are never freed, so students that are only read for a pass are read in place
+// from their data file instead (see StudentDataFile.view).
+//
+// Each row also records the department of the student it belongs to (id 0
+// until it is added to one), which picks the grading scheme its grade comes
+// from. Changing the schemes re-grades every row in place.
+//
+// With -Dgrades.offheap=true the shared store keeps its rows outside the Java
+// heap instead, each chunk one direct buffer of fixed layout, so that
+// millions of rows add nothing for the collector to trace or copy and pause
+// times stay flat as the data grows. Only the chunk objects, the subject names
+// and the department tables stay on the heap. Direct buffers count against
+// -XX:MaxDirectMemorySize (by default the maximum heap size), which a small
+// heap therefore needs raised: 32 bytes per row held.
+//
+// The buffers rather than an Arena of MemorySegments because the code base
+// stays on JDK 21 (virtual threads), where the foreign memory API is still a
+// preview. A chunk's memory goes back when its store is collected. Releasing
+// chunks earlier would take freeing rows, which nothing here does; the shared
+// store only grows with the students looked up or edited, which the open store
+// keeps anyway.
+final class GradeStore extends GradeRows {
+    static final String[] GRADES = { "A+", "A", "B", "C", "D", "F" };
+    static final int[] GRADE_POINTS = { 10, 9, 8, 7, 6, 0 };
+    static final String[] STATUSES = { "PASS", "FAIL" };
+    static final byte PASS = 0;
+    static final byte FAIL = 1;
+
+    // After GRADES, which the grading schemes it starts with read.
+    static final GradeStore SHARED = new GradeStore(Boolean.getBoolean("grades.offheap"));
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private abstract static class Chunk {
+        abstract double marks(int offset);
+
+        abstract double maxMarks(int offset);
+
+        abstract double passing(int offset);
+
+        abstract int nameId(int offset);
+
+        abstract byte grade(int offset);
+
+        abstract byte status(int offset);
+
+        abstract short department(int offset);
+
+        abstract void set(int offset, double marks, double maxMarks, double passing, int nameId, byte grade,
+                byte status);
+
+        abstract void setDepartment(int offset, short department, byte grade);
+
+        // Grades the first `end` rows again with the department tables.
+        abstract void regrade(byte[][] tables, int end);
+
+        double percentage(int offset) {
+            return (marks(offset) / maxMarks(offset)) * 100;
+        }
+    }
+
+    private static final class HeapChunk extends Chunk {
+        final double[] marks = new double[CHUNK_SIZE];
+        final double[] maxMarks = new double[CHUNK_SIZE];
+        final double[] passing = new double[CHUNK_SIZE];
+        final int[] nameIds = new int[CHUNK_SIZE];
+        final byte[] grades = new byte[CHUNK_SIZE];
+        final byte[] statuses = new byte[CHUNK_SIZE];
+        final short[] departments = new short[CHUNK_SIZE];
+
+        double marks(int offset) {
+            return marks[offset];
+        }
+
+        double maxMarks(int offset) {
+            return maxMarks[offset];
+        }
+
+        double passing(int offset) {
+            return passing[offset];
+        }
+
+        int nameId(int offset) {
+            return nameIds[offset];
+        }
+
+        byte grade(int offset) {
+            return grades[offset];
+        }
+
+        byte status(int offset) {
+            return statuses[offset];
+        }
+
+        short department(int offset) {
+            return departments[offset];
+        }
+
+        void set(int offset, double marks, double maxMarks, double passing, int nameId, byte grade, byte status) {
+            this.marks[offset] = marks;
+            this.maxMarks[offset] = maxMarks;
+            this.passing[offset] = passing;
+            this.nameIds[offset] = nameId;
+            this.grades[offset] = grade;
+            this.statuses[offset] = status;
+        }
+
+        void setDepartment(int offset, short department, byte grade) {
+            departments[offset] = department;
+            grades[offset] = grade;
+        }
+
+        // The loop body only reads primitive columns, clamps the percentage
+        // without branching and looks the grade up.
+        void regrade(byte[][] tables, int end) {
+            for (int i = 0; i < end; i++) {
+                grades[i] = tables[departments[i]][GradingScheme.bucket((marks[i] / maxMarks[i]) * 100)];
+            }
+        }
+    }
+
+    // The same columns laid out one after another in a single direct buffer of
+    // 32 bytes per row.
+    private static final class OffHeapChunk extends Chunk {
+        private static final int MARKS = 0;
+        private static final int MAX_MARKS = MARKS + CHUNK_SIZE * 8;
+        private static final int PASSING = MAX_MARKS + CHUNK_SIZE * 8;
+        private static final int NAME_ID = PASSING + CHUNK_SIZE * 8;
+        private static final int DEPARTMENT = NAME_ID + CHUNK_SIZE * 4;
+        private static final int GRADE = DEPARTMENT + CHUNK_SIZE * 2;
+        private static final int STATUS = GRADE + CHUNK_SIZE;
+
+        private final ByteBuffer columns = ByteBuffer.allocateDirect(STATUS + CHUNK_SIZE)
+                .order(ByteOrder.nativeOrder());
+
+        double marks(int offset) {
+            return columns.getDouble(MARKS + (offset << 3));
+        }
+
+        double maxMarks(int offset) {
+            return columns.getDouble(MAX_MARKS + (offset << 3));
+        }
+
+        double passing(int offset) {
+            return columns.getDouble(PASSING + (offset << 3));
+        }
+
+        int nameId(int offset) {
+            return columns.getInt(NAME_ID + (offset << 2));
+        }
+
+        byte grade(int offset) {
+            return columns.get(GRADE + offset);
+        }
+
+        byte status(int offset) {
+            return columns.get(STATUS + offset);
+        }
+
+        short department(int offset) {
+            return columns.getShort(DEPARTMENT + (offset << 1));
+        }
+
+        void set(int offset, double marks, double maxMarks, double passing, int nameId, byte grade, byte status) {
+            columns.putDouble(MARKS + (offset << 3), marks);
+            columns.putDouble(MAX_MARKS + (offset << 3), maxMarks);
+            columns.putDouble(PASSING + (offset << 3), passing);
+            columns.putInt(NAME_ID + (offset << 2), nameId);
+            columns.put(GRADE + offset, grade);
+            columns.put(STATUS + offset, status);
+        }
+
+        void setDepartment(int offset, short department, byte grade) {
+            columns.putShort(DEPARTMENT + (offset << 1), department);
+            columns.put(GRADE + offset, grade);
+        }
+
+        void regrade(byte[][] tables, int end) {
+            for (int i = 0; i < end; i++) {
+                double percentage = (columns.getDouble(MARKS + (i << 3)) / columns.getDouble(MAX_MARKS + (i << 3)))
+                        * 100;
+                columns.put(GRADE + i,
+                        tables[columns.getShort(DEPARTMENT + (i << 1))][GradingScheme.bucket(percentage)]);
+            }
+        }
+    }
+
+    // Rows are appended under the lock; readers get a row number from the writer
+    // (or through whatever published the Subject) and then read without locking.
+    private volatile Chunk[] chunks = new Chunk[16];
+    private volatile String[] names = new String[64];
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final Map<String, Short> departmentIds = new HashMap<>();
+    private final List<String> departmentNames = new ArrayList<>(Collections.singletonList(null));
+    private volatile GradingSchemes gradingSchemes = GradingSchemes.STANDARD;
+    // Grade table of each department id, 0 being the default scheme's.
+    private byte[][] gradeTables = { GradingScheme.STANDARD.table() };
+    private volatile int gradingVersion;
+    private int size;
+    private final boolean offHeap;
+
+    GradeStore() {
+        this(false);
+    }
+
+    GradeStore(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    synchronized int add(String name, double marks, double maxMarks, double passingPercentage) {
+        return append(name, marks, maxMarks, passingPercentage);
+    }
+
+    // Appends count rows under one lock acquisition; they get consecutive row
+    // numbers starting at the one returned.
+    synchronized int addAll(String[] names, double[] marks, double[] maxMarks, double[] passingPercentages,
+            int count) {
+        int first = size;
+        for (int i = 0; i < count; i++) {
+            append(names[i], marks[i], maxMarks[i], passingPercentages[i]);
+        }
+        return first;
+    }
+
+    private int append(String name, double marks, double maxMarks, double passingPercentage) {
+        int row = size;
+        int index = row >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[index] == null) {
+            current[index] = offHeap ? new OffHeapChunk() : new HeapChunk();
+        }
+        Chunk chunk = current[index];
+        double percentage = (marks / maxMarks) * 100;
+        chunk.set(row & CHUNK_MASK, marks, maxMarks, passingPercentage, intern(name),
+                gradeTables[0][GradingScheme.bucket(percentage)], percentage >= passingPercentage ? PASS : FAIL);
+        size = row + 1;
+        chunks = current;
+        return row;
+    }
+
+    private int intern(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = nameIds.size();
+            String[] current = names;
+            if (id == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[id] = name;
+            names = current;
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    // Grade of a percentage in the department's scheme, for rows read from a
+    // file rather than held here.
+    byte gradeCode(String department, double percentage) {
+        return gradingSchemes.forDepartment(department).grade(percentage);
+    }
+
+    // Puts the row in the department, re-grading it with that department's scheme.
+    synchronized void setDepartment(int row, String department) {
+        Chunk chunk = chunk(row);
+        int offset = row & CHUNK_MASK;
+        short id = departmentId(department);
+        if (chunk.department(offset) != id) {
+            chunk.setDepartment(offset, id, gradeTables[id][GradingScheme.bucket(chunk.percentage(offset))]);
+        }
+    }
+
+    private short departmentId(String department) {
+        Short id = departmentIds.get(department);
+        if (id == null) {
+            if (departmentNames.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many departments");
+            }
+            id = (short) departmentNames.size();
+            departmentNames.add(department);
+            departmentIds.put(department, id);
+            gradeTables = Arrays.copyOf(gradeTables, id + 1);
+            gradeTables[id] = gradingSchemes.forDepartment(department).table();
+        }
+        return id;
+    }
+
+    GradingSchemes getGradingSchemes() {
+        return gradingSchemes;
+    }
+
+    // Installs the schemes and re-grades every row with them. Rows cannot be
+    // added meanwhile; readers see each grade either before or after.
+    synchronized void setGradingSchemes(GradingSchemes schemes) {
+        byte[][] tables = new byte[departmentNames.size()][];
+        tables[0] = schemes.getDefault().table();
+        for (int id = 1; id < tables.length; id++) {
+            tables[id] = schemes.forDepartment(departmentNames.get(id)).table();
+        }
+        gradingSchemes = schemes;
+        gradeTables = tables;
+        regrade(tables, size);
+        gradingVersion++;
+    }
+
+    // Changes whenever grades are recomputed, so that anything rendered from a
+    // grade can tell it is stale.
+    int gradingVersion() {
+        return gradingVersion;
+    }
+
+    // One task per chunk.
+    private void regrade(byte[][] tables, int rows) {
+        Chunk[] current = chunks;
+        IntStream.range(0, (rows + CHUNK_MASK) >>> CHUNK_BITS).parallel().forEach(index ->
+                current[index].regrade(tables, Math.min(CHUNK_SIZE, rows - (index << CHUNK_BITS))));
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    String name(int row) {
+        return names[chunk(row).nameId(row & CHUNK_MASK)];
+    }
+
+    double marks(int row) {
+        return chunk(row).marks(row & CHUNK_MASK);
+    }
+
+    double maxMarks(int row) {
+        return chunk(row).maxMarks(row & CHUNK_MASK);
+    }
+
+    double passingPercentage(int row) {
+        return chunk(row).passing(row & CHUNK_MASK);
+    }
+
+    double percentage(int row) {
+        return chunk(row).percentage(row & CHUNK_MASK);
+    }
+
+    byte gradeCode(int row) {
+        return chunk(row).grade(row & CHUNK_MASK);
+    }
+
+    byte statusCode(int row) {
+        return chunk(row).status(row & CHUNK_MASK);
+    }
+}
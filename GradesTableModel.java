@@ -0,0 +1,99 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.List;
+
+// Shows one semester's subject list in place; rows are read on demand.
+class GradesTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = { "Subject", "Marks", "Max Marks", "Passing %", "Percentage", "Grade",
+            "Status" };
+
+    private List<Subject> subjects = Collections.emptyList();
+    private String subjectFilter;
+    private double minPercentage = Double.NEGATIVE_INFINITY;
+    private double maxPercentage = Double.POSITIVE_INFINITY;
+    private int[] view; // indexes into subjects that pass the filter, or null for all
+    private final ReportFormatter formatter = new ReportFormatter();
+    private final StringBuilder scratch = new StringBuilder();
+
+    void setSubjects(List<Subject> subjects) {
+        this.subjects = subjects;
+        refilter();
+    }
+
+    // Shows only subjects with the given name (ignoring case) and percentage range;
+    // nulls clear the respective criterion.
+    void setFilter(String subject, Double min, Double max) {
+        this.subjectFilter = subject;
+        this.minPercentage = min == null ? Double.NEGATIVE_INFINITY : min;
+        this.maxPercentage = max == null ? Double.POSITIVE_INFINITY : max;
+        refilter();
+    }
+
+    private void refilter() {
+        view = null;
+        if (subjectFilter != null || minPercentage > Double.NEGATIVE_INFINITY
+                || maxPercentage < Double.POSITIVE_INFINITY) {
+            int[] rows = new int[subjects.size()];
+            int count = 0;
+            for (int i = 0; i < subjects.size(); i++) {
+                if (matches(subjects.get(i))) {
+                    rows[count++] = i;
+                }
+            }
+            view = Arrays.copyOf(rows, count);
+        }
+        fireTableDataChanged();
+    }
+
+    private boolean matches(Subject subject) {
+        double percentage = subject.getPercentage();
+        return (subjectFilter == null || subject.getName().equalsIgnoreCase(subjectFilter))
+                && percentage >= minPercentage && percentage <= maxPercentage;
+    }
+
+    // Call after a subject has been appended to the semester's list.
+    void subjectAdded(List<Subject> subjects) {
+        if (subjects != this.subjects || view != null) {
+            setSubjects(subjects);
+            return;
+        }
+        int row = subjects.size() - 1;
+        fireTableRowsInserted(row, row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return view == null ? subjects.size() : view.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Subject subject = subjects.get(view == null ? row : view[row]);
+        switch (column) {
+            case 0:
+                return subject.getName();
+            case 1:
+                return subject.getMarks();
+            case 2:
+                return subject.getMaxMarks();
+            case 3:
+                return subject.getPercentage();
+            case 4:
+                return formatter.formatPercentage(scratch, subject.getPercentage());
+            case 5:
+                return subject.getGrade();
+            default:
+                return subject.getStatus();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.*;
+
+// Minimum whole percentages for A+, A, B, C and D; anything lower is an F. The
+// grade of every whole-percent bucket is worked out up front, so grading a
+// percentage is one clamp and one table lookup. NaN and negatives land in
+// bucket 0, anything over 100 in bucket 100.
+final class GradingScheme {
+    static final GradingScheme STANDARD = new GradingScheme("standard", 90, 80, 70, 60, 50);
+
+    private final String name;
+    private final int[] thresholds;
+    private final byte[] table = new byte[101];
+
+    GradingScheme(String name, int... thresholds) {
+        if (thresholds.length != GradeStore.GRADES.length - 1) {
+            throw new IllegalArgumentException("Scheme " + name + " needs " + (GradeStore.GRADES.length - 1)
+                    + " thresholds, not " + thresholds.length);
+        }
+        for (int i = 0; i < thresholds.length; i++) {
+            if (thresholds[i] < 0 || thresholds[i] > 100 || (i > 0 && thresholds[i] > thresholds[i - 1])) {
+                throw new IllegalArgumentException("Scheme " + name
+                        + " needs descending thresholds between 0 and 100: " + Arrays.toString(thresholds));
+            }
+        }
+        this.name = name;
+        this.thresholds = thresholds.clone();
+        for (int bucket = 0; bucket < table.length; bucket++) {
+            byte grade = (byte) thresholds.length;
+            while (grade > 0 && bucket >= thresholds[grade - 1]) {
+                grade--;
+            }
+            table[bucket] = grade;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int[] getThresholds() {
+        return thresholds.clone();
+    }
+
+    byte grade(double percentage) {
+        return table[bucket(percentage)];
+    }
+
+    // Math.max and Math.min pass NaN through, and (int) NaN is 0.
+    static int bucket(double percentage) {
+        return (int) Math.min(100, Math.max(0, percentage));
+    }
+
+    // Shared with GradeStore's bulk re-grade, which indexes it directly.
+    byte[] table() {
+        return table;
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Which grading scheme each department uses, read from grading.properties:
+//
+//   scheme.relaxed = 85,75,65,55,45     minimums for A+, A, B, C, D
+//   default = standard                  for departments not listed
+//   department.MECH = relaxed
+//
+// "standard" (90,80,70,60,50) is always defined. Department names match
+// regardless of case.
+final class GradingSchemes {
+    static final Path FILE = Paths.get("grading.properties");
+    static final GradingSchemes STANDARD = new GradingSchemes(GradingScheme.STANDARD, Collections.emptyMap());
+
+    private final GradingScheme defaultScheme;
+    private final Map<String, GradingScheme> byDepartment;
+    // Keyed by the department string as given, so hot loops skip the case folding.
+    private final Map<String, GradingScheme> resolved = new ConcurrentHashMap<>();
+
+    private GradingSchemes(GradingScheme defaultScheme, Map<String, GradingScheme> byDepartment) {
+        this.defaultScheme = defaultScheme;
+        this.byDepartment = byDepartment;
+    }
+
+    static GradingSchemes of(GradingScheme defaultScheme, Map<String, GradingScheme> byDepartment) {
+        Map<String, GradingScheme> keyed = new HashMap<>();
+        for (Map.Entry<String, GradingScheme> entry : byDepartment.entrySet()) {
+            keyed.put(key(entry.getKey()), entry.getValue());
+        }
+        return new GradingSchemes(defaultScheme, keyed);
+    }
+
+    // The schemes in FILE, or STANDARD when there is no such file.
+    static GradingSchemes load() throws IOException {
+        return Files.exists(FILE) ? load(FILE) : STANDARD;
+    }
+
+    static GradingSchemes load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(path)) {
+            properties.load(in);
+        }
+        Map<String, GradingScheme> schemes = new HashMap<>();
+        schemes.put(GradingScheme.STANDARD.getName(), GradingScheme.STANDARD);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("scheme.")) {
+                String name = key.substring("scheme.".length());
+                try {
+                    schemes.put(name, new GradingScheme(name, parseThresholds(path, key, properties.getProperty(key))));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ": " + e.getMessage());
+                }
+            }
+        }
+        GradingScheme defaultScheme = scheme(path, schemes, properties.getProperty("default", "standard"));
+        Map<String, GradingScheme> byDepartment = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("department.")) {
+                byDepartment.put(key(key.substring("department.".length())),
+                        scheme(path, schemes, properties.getProperty(key)));
+            } else if (!key.startsWith("scheme.") && !key.equals("default")) {
+                throw new IOException(path + ": unknown setting " + key);
+            }
+        }
+        return new GradingSchemes(defaultScheme, byDepartment);
+    }
+
+    private static int[] parseThresholds(Path path, String key, String value) throws IOException {
+        String[] parts = value.split(",");
+        int[] thresholds = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                thresholds[i] = Integer.parseInt(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException(path + ": " + key + " must be whole percentages, not " + value);
+        }
+        return thresholds;
+    }
+
+    private static GradingScheme scheme(Path path, Map<String, GradingScheme> schemes, String name)
+            throws IOException {
+        GradingScheme scheme = schemes.get(name.trim());
+        if (scheme == null) {
+            throw new IOException(path + ": no scheme named " + name);
+        }
+        return scheme;
+    }
+
+    private static String key(String department) {
+        return department.trim().toLowerCase(Locale.ROOT);
+    }
+
+    GradingScheme getDefault() {
+        return defaultScheme;
+    }
+
+    GradingScheme forDepartment(String department) {
+        GradingScheme scheme = resolved.get(department);
+        if (scheme == null) {
+            scheme = byDepartment.getOrDefault(key(department), defaultScheme);
+            resolved.put(department, scheme);
+        }
+        return scheme;
+    }
+}
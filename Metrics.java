@@ -0,0 +1,235 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import jdk.jfr.*;
+
+// Process-wide counters, gauges and timers, cheap enough to leave on: recording
+// is a few striped adds and one histogram increment, without locks or
+// allocation apart from the Span. Each timed operation is also a JFR event
+// (sgms.Operation), so a flight recording lines it up with GC and I/O.
+//
+// Timers keep a log-linear histogram of durations in the manner of
+// HdrHistogram: 16 buckets per power of two, so a percentile is reported to
+// within 1/16 (about 6%) of the true value at every scale.
+final class Metrics {
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new Counter());
+    }
+
+    static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    // Read when the metrics are shown, on the thread showing them.
+    static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        void increment() {
+            count.increment();
+        }
+
+        void add(long value) {
+            count.add(value);
+        }
+
+        long get() {
+            return count.sum();
+        }
+    }
+
+    static final class Timer {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final Histogram histogram = new Histogram();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        // TIMER.time(() -> ...) times the operation and returns what it returns,
+        // throwing whatever it throws.
+        <T, E extends Exception> T time(Operation<T, E> operation) throws E {
+            Span span = new Span(this);
+            try {
+                return operation.run();
+            } finally {
+                span.close();
+            }
+        }
+
+        <E extends Exception> void time(Action<E> action) throws E {
+            Span span = new Span(this);
+            try {
+                action.run();
+            } finally {
+                span.close();
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.record(nanos);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        long maxNanos() {
+            return maxNanos.get();
+        }
+
+        // Duration below which the given fraction of the recorded ones fall, rounded
+        // up to its bucket's limit; 0 before anything is recorded.
+        long percentileNanos(double fraction) {
+            return histogram.percentile(fraction);
+        }
+    }
+
+    interface Operation<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    interface Action<E extends Exception> {
+        void run() throws E;
+    }
+
+    // One timed run of an operation; close() records it.
+    private static final class Span {
+        private final Timer timer;
+        private final OperationEvent event = new OperationEvent();
+        private final long start;
+
+        private Span(Timer timer) {
+            this.timer = timer;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        void close() {
+            timer.record(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.operation = timer.name;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("sgms.Operation")
+    @Label("Operation")
+    @Category("Student Grade Management")
+    @StackTrace(false)
+    static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+    }
+
+    // Bucket i < 16 holds exactly i ns; above that, each power of two is split
+    // into 16 equal buckets.
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 16;
+        private static final int SUB_BITS = 4;
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS);
+
+        void record(long nanos) {
+            counts.incrementAndGet(bucket(Math.max(0, nanos)));
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        // Largest value that falls in the bucket.
+        static long limit(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+            return lowest + (1L << (exponent - SUB_BITS)) - 1;
+        }
+
+        long percentile(double fraction) {
+            long[] snapshot = new long[counts.length()];
+            long total = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return limit(i);
+                }
+            }
+            return limit(snapshot.length - 1);
+        }
+    }
+
+    // Everything recorded so far as plain text, timers in milliseconds.
+    static String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Metrics at %tF %<tT%n", System.currentTimeMillis()));
+        out.append(String.format("%nTimers%n"));
+        out.append(String.format("  %-22s %8s %10s %9s %9s %9s %9s %9s%n", "operation", "count", "total ms",
+                "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(TIMERS).entrySet()) {
+            Timer timer = entry.getValue();
+            long count = timer.count();
+            out.append(String.format("  %-22s %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(), count,
+                    timer.totalNanos() / 1e6, count == 0 ? 0 : timer.totalNanos() / 1e6 / count,
+                    timer.percentileNanos(0.5) / 1e6, timer.percentileNanos(0.9) / 1e6,
+                    timer.percentileNanos(0.99) / 1e6, timer.maxNanos() / 1e6));
+        }
+        out.append(String.format("%nCounters%n"));
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(COUNTERS).entrySet()) {
+            out.append(String.format("  %-22s %,14d%n", entry.getKey(), entry.getValue().get()));
+        }
+        out.append(String.format("%nGauges%n"));
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(GAUGES).entrySet()) {
+            out.append(String.format("  %-22s %,14d%n", entry.getKey(), entry.getValue().getAsLong()));
+        }
+        Runtime runtime = Runtime.getRuntime();
+        out.append(String.format("  %-22s %,14d%n", "heap.used.bytes", runtime.totalMemory() - runtime.freeMemory()));
+        return out.toString();
+    }
+
+    static void dump(Path path) throws IOException {
+        Files.write(path, dump().getBytes(StandardCharsets.UTF_8));
+    }
+}
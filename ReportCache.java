@@ -0,0 +1,109 @@
+import java.nio.charset.Charset;
+import java.util.*;
+
+// Rendered reports per student, shared by the Reports tab and the export. An
+// entry is reused only while the student's content stamp is unchanged, so any
+// added subject re-renders that student alone. Export sections are kept
+// already encoded. Entries are evicted least recently used first once they
+// hold more than the capacity (in chars and bytes).
+class ReportCache {
+    private static final long DEFAULT_CAPACITY = 16L << 20;
+
+    private static final class Entry {
+        final long stamp;
+        String report;
+        byte[] export;
+
+        Entry(long stamp) {
+            this.stamp = stamp;
+        }
+
+        long chars() {
+            return (report == null ? 0 : report.length()) + (export == null ? 0 : export.length);
+        }
+    }
+
+    private final ReportFormatter formatter = new ReportFormatter();
+    private final Charset charset = Charset.defaultCharset();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long capacity;
+    private long chars;
+
+    ReportCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ReportCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    // The Reports tab text.
+    String report(Student student) {
+        long stamp = student.contentStamp();
+        synchronized (this) {
+            Entry entry = entries.get(student.getRollNo());
+            if (entry != null && entry.stamp == stamp && entry.report != null) {
+                return entry.report;
+            }
+        }
+        StringBuilder text = new StringBuilder(1024);
+        formatter.appendReport(text, student);
+        String report = text.toString();
+        store(student.getRollNo(), stamp, report, null);
+        return report;
+    }
+
+    // The Reports tab text if it is cached for the stamp, else null, so that a
+    // caller can skip building the student.
+    synchronized String cachedReport(String rollNo, long stamp) {
+        Entry entry = entries.get(rollNo);
+        return entry != null && entry.stamp == stamp ? entry.report : null;
+    }
+
+    // The student's section of the exported report in the default charset.
+    // Called from the export's worker threads; formatting runs outside the lock.
+    byte[] export(Student student) {
+        long stamp = student.contentStamp();
+        synchronized (this) {
+            Entry entry = entries.get(student.getRollNo());
+            if (entry != null && entry.stamp == stamp && entry.export != null) {
+                return entry.export;
+            }
+        }
+        StringBuilder text = new StringBuilder(1024);
+        formatter.appendExport(text, student);
+        byte[] export = text.toString().getBytes(charset);
+        store(student.getRollNo(), stamp, null, export);
+        return export;
+    }
+
+    private synchronized void store(String rollNo, long stamp, String report, byte[] export) {
+        Entry entry = entries.get(rollNo);
+        if (entry != null) {
+            chars -= entry.chars();
+        }
+        if (entry == null || entry.stamp != stamp) {
+            entry = new Entry(stamp);
+            entries.put(rollNo, entry);
+        }
+        if (report != null) {
+            entry.report = report;
+        }
+        if (export != null) {
+            entry.export = export;
+        }
+        chars += entry.chars();
+
+        // The entry just stored is the most recent one, so it goes last.
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (chars > capacity && entries.size() > 1) {
+            chars -= eldest.next().chars();
+            eldest.remove();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        chars = 0;
+    }
+}
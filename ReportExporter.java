@@ -0,0 +1,199 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPOutputStream;
+
+// Bulk report export. Students are cut into batches that are formatted in
+// parallel on the common ForkJoin pool, while the calling thread writes the
+// finished batches in their original order. A bounded window of batches in
+// flight keeps memory flat however many students there are.
+class ReportExporter {
+    private static final int BATCH_SIZE = 256;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path target;
+    private final boolean byDepartment;
+    private final boolean gzip;
+    private final ReportCache cache;
+    private final Charset charset = Charset.defaultCharset();
+    private final Map<String, OutputStream> outputs = new LinkedHashMap<>();
+    private final List<Path> created = new ArrayList<>();
+    private final Queue<EncodedText> spareBuffers = new ConcurrentLinkedQueue<>();
+
+    // With byDepartment each department goes to its own file named after the target,
+    // e.g. reports-CSE.txt; with gzip every file is compressed and gets a .gz suffix.
+    ReportExporter(Path target, boolean byDepartment, boolean gzip) {
+        this(target, byDepartment, gzip, null);
+    }
+
+    // Students whose sections are in the cache are not formatted again.
+    ReportExporter(Path target, boolean byDepartment, boolean gzip, ReportCache cache) {
+        this.target = target;
+        this.byDepartment = byDepartment;
+        this.gzip = gzip;
+        this.cache = cache;
+    }
+
+    List<Path> getCreatedFiles() {
+        return Collections.unmodifiableList(created);
+    }
+
+    // Progress receives the number of students written so far; throwing from it
+    // (e.g. CancellationException) aborts the export and removes the files.
+    void export(Iterable<Student> students, IntConsumer progress) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<Future<Batch>> pending = new ArrayDeque<>();
+        try {
+            int written = 0;
+            List<Student> batch = new ArrayList<>(BATCH_SIZE);
+            for (Student student : students) {
+                batch.add(student);
+                if (batch.size() == BATCH_SIZE) {
+                    pending.add(pool.submit(format(batch)));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    if (pending.size() >= window) {
+                        written += write(pending.poll());
+                        progress.accept(written);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                pending.add(pool.submit(format(batch)));
+            }
+            while (!pending.isEmpty()) {
+                written += write(pending.poll());
+                progress.accept(written);
+            }
+            if (outputs.isEmpty()) {
+                output("");
+            }
+            closeOutputs();
+        } catch (IOException | RuntimeException e) {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+            try {
+                closeOutputs();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            for (Path path : created) {
+                Files.deleteIfExists(path);
+            }
+            throw e;
+        }
+    }
+
+    private static class Batch {
+        final int students;
+        final Map<String, EncodedText> parts = new LinkedHashMap<>();
+
+        Batch(int students) {
+            this.students = students;
+        }
+    }
+
+    // Formats one batch into a buffer per output (a single "" output unless sharding).
+    // The buffers go back to spareBuffers once written, so a long export stops
+    // allocating once the window's buffers have grown.
+    private Callable<Batch> format(List<Student> batch) {
+        return () -> {
+            ReportFormatter formatter = new ReportFormatter();
+            StringBuilder text = new StringBuilder(1024);
+            Batch formatted = new Batch(batch.size());
+            for (Student student : batch) {
+                String key = byDepartment ? student.getDepartment() : "";
+                EncodedText part = formatted.parts.get(key);
+                if (part == null) {
+                    part = spareBuffers.poll();
+                    if (part == null) {
+                        part = new EncodedText(charset, BUFFER_SIZE);
+                    }
+                    part.reset();
+                    formatted.parts.put(key, part);
+                }
+                if (cache != null) {
+                    part.append(cache.export(student));
+                } else {
+                    text.setLength(0);
+                    formatter.appendExport(text, student);
+                    part.append(text);
+                }
+            }
+            return formatted;
+        };
+    }
+
+    private int write(Future<Batch> future) throws IOException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Error formatting reports: " + e.getCause().getMessage(), e.getCause());
+        }
+        for (Map.Entry<String, EncodedText> part : batch.parts.entrySet()) {
+            part.getValue().writeTo(output(part.getKey()));
+            spareBuffers.add(part.getValue());
+        }
+        return batch.students;
+    }
+
+    private OutputStream output(String key) throws IOException {
+        OutputStream out = outputs.get(key);
+        if (out == null) {
+            Path path = key.isEmpty() ? target : shardPath(key);
+            if (gzip && !path.getFileName().toString().endsWith(".gz")) {
+                path = path.resolveSibling(path.getFileName() + ".gz");
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            created.add(path);
+            out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            if (gzip) {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            outputs.put(key, out);
+
+            StringBuilder header = new StringBuilder();
+            ReportFormatter.appendExportHeader(header);
+            out.write(header.toString().getBytes(charset));
+        }
+        return out;
+    }
+
+    private Path shardPath(String department) {
+        String name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String safe = department.replaceAll("[^A-Za-z0-9_.-]", "_");
+        String shard = dot > 0 ? name.substring(0, dot) + "-" + safe + name.substring(dot)
+                : name + "-" + safe;
+        return target.resolveSibling(shard);
+    }
+
+    private void closeOutputs() throws IOException {
+        IOException failure = null;
+        for (OutputStream out : outputs.values()) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        outputs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
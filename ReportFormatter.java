@@ -0,0 +1,189 @@
+import java.text.DecimalFormatSymbols;
+import java.util.*;
+import java.util.List;
+
+// Renders the report text without String.format. Output matches the printf
+// patterns exportReports() and the Reports tab used ("%-20s: %6.2f/%-6.2f
+// (%6.2f%%) - %s - %s"), including the locale's decimal separator.
+class ReportFormatter {
+    static final String RULE = "==============================================";
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final char decimalSeparator;
+    private final boolean asciiDigits;
+
+    ReportFormatter() {
+        this(Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    ReportFormatter(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.asciiDigits = symbols.getZeroDigit() == '0';
+    }
+
+    static void appendExportHeader(StringBuilder out) {
+        out.append("Student Grade Management System - Complete Report").append(NEWLINE);
+        out.append(RULE).append('\n').append(NEWLINE);
+    }
+
+    void appendExport(StringBuilder out, Student student) {
+        out.append("Student Information:").append(NEWLINE);
+        out.append("Roll No: ").append(student.getRollNo()).append(NEWLINE);
+        out.append("Name: ").append(student.getName()).append(NEWLINE);
+        out.append("Department: ").append(student.getDepartment()).append(NEWLINE).append(NEWLINE);
+
+        for (Map.Entry<Integer, List<Subject>> entry : student.getSemesterSubjects().entrySet()) {
+            out.append("Semester ");
+            appendInt(out, entry.getKey());
+            out.append(':').append(NEWLINE);
+            out.append("-----------").append(NEWLINE);
+            SubjectList subjects = SubjectList.of(entry.getValue());
+            for (int i = 0; i < subjects.size(); i++) {
+                appendSubjectRow(out, subjects.grades(), subjects.row(i));
+                out.append(NEWLINE);
+            }
+            out.append(NEWLINE);
+        }
+        out.append(RULE).append('\n').append(NEWLINE);
+    }
+
+    // The Reports tab text, which uses "\n" and adds semester and cumulative
+    // totals. The totals are read first and each semester is shown as far as they
+    // cover it, so a subject being added meanwhile is either in both or neither.
+    void appendReport(StringBuilder out, Student student) {
+        StudentTotals totals = student.totals();
+        out.append("Student Report\n");
+        out.append("=============\n\n");
+        out.append("Roll No: ").append(student.getRollNo()).append('\n');
+        out.append("Name: ").append(student.getName()).append('\n');
+        out.append("Department: ").append(student.getDepartment()).append("\n\n");
+
+        for (Map.Entry<Integer, List<Subject>> entry : student.getSemesterSubjects().entrySet()) {
+            int semester = entry.getKey();
+            if (!totals.hasSemester(semester)) {
+                continue;
+            }
+            out.append("Semester ");
+            appendInt(out, semester);
+            out.append('\n');
+            out.append("----------\n");
+
+            SubjectList subjects = SubjectList.of(entry.getValue());
+            for (int i = 0; i < totals.subjects(semester); i++) {
+                appendSubjectRow(out, subjects.grades(), subjects.row(i));
+                out.append('\n');
+            }
+
+            out.append("\nSemester Total: ");
+            appendFixed2(out, totals.marks(semester), 0, false);
+            out.append('/');
+            appendFixed2(out, totals.maxMarks(semester), 0, false);
+            out.append(" (");
+            appendFixed2(out, totals.percentage(semester), 0, false);
+            out.append("%)\nSemester GPA: ");
+            appendFixed2(out, totals.gpa(semester), 0, false);
+            out.append("\n\n");
+        }
+
+        if (totals.subjects() > 0) {
+            out.append("Cumulative Total: ");
+            appendFixed2(out, totals.marks(), 0, false);
+            out.append('/');
+            appendFixed2(out, totals.maxMarks(), 0, false);
+            out.append(" (");
+            appendFixed2(out, totals.percentage(), 0, false);
+            out.append("%)\nCGPA: ");
+            appendFixed2(out, totals.cgpa(), 0, false);
+            out.append('\n');
+        }
+    }
+
+    // "%-20s: %6.2f/%-6.2f (%6.2f%%) - %s - %s" without the line terminator.
+    void appendSubjectLine(StringBuilder out, Subject subject) {
+        appendSubjectRow(out, subject.grades(), subject.row());
+    }
+
+    // Reads the row directly, so formatting a report allocates nothing beyond
+    // the growth of `out`.
+    private void appendSubjectRow(StringBuilder out, GradeRows grades, int row) {
+        padRight(out, grades.name(row), 20);
+        out.append(": ");
+        appendFixed2(out, grades.marks(row), 6, false);
+        out.append('/');
+        appendFixed2(out, grades.maxMarks(row), 6, true);
+        out.append(" (");
+        appendFixed2(out, grades.percentage(row), 6, false);
+        out.append("%) - ").append(GradeStore.GRADES[grades.gradeCode(row)])
+                .append(" - ").append(GradeStore.STATUSES[grades.statusCode(row)]);
+    }
+
+    void appendInt(StringBuilder out, int value) {
+        if (asciiDigits) {
+            out.append(value);
+        } else {
+            out.append(String.format("%d", value));
+        }
+    }
+
+    static void padRight(StringBuilder out, String value, int width) {
+        out.append(value);
+        for (int i = value.length(); i < width; i++) {
+            out.append(' ');
+        }
+    }
+
+    // "%.2f%%" as a String, for table cells.
+    String formatPercentage(StringBuilder scratch, double value) {
+        scratch.setLength(0);
+        appendFixed2(scratch, value, 0, false);
+        return scratch.append('%').toString();
+    }
+
+    // Same text as "%{-}{width}.2f" (no padding for width 0). Formatter rounds the
+    // shortest decimal form of the double half-up, and rounding value * 100 agrees
+    // with that except next to a .5 boundary. There the shortest form is the
+    // boundary itself exactly when the boundary (2k + 1) / 200, correctly rounded,
+    // is this double; otherwise it lies on the same side as the double does.
+    // Negatives, NaN, huge values and non-ASCII-digit locales go through
+    // String.format.
+    void appendFixed2(StringBuilder out, double value, int width, boolean leftAlign) {
+        if (!asciiDigits || !(value >= 0) || value >= 1e9 || (value == 0 && 1 / value < 0)) {
+            out.append(String.format(width == 0 ? "%.2f" : leftAlign ? "%-" + width + ".2f" : "%" + width + ".2f",
+                    value));
+            return;
+        }
+        double scaled = value * 100;
+        double floor = Math.floor(scaled);
+        long cents;
+        if (Math.abs(scaled - floor - 0.5) < 1e-4) {
+            long k = (long) floor;
+            cents = value >= (2 * k + 1) / 200.0 ? k + 1 : k;
+        } else {
+            cents = Math.round(scaled);
+        }
+        long whole = cents / 100;
+        int rest = (int) (cents % 100);
+        int length = digits(whole) + 3;
+        if (!leftAlign) {
+            for (int i = length; i < width; i++) {
+                out.append(' ');
+            }
+        }
+        out.append(whole).append(decimalSeparator).append((char) ('0' + rest / 10)).append((char) ('0' + rest % 10));
+        if (leftAlign) {
+            for (int i = length; i < width; i++) {
+                out.append(' ');
+            }
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
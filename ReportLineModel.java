@@ -0,0 +1,138 @@
+import java.util.*;
+import javax.swing.AbstractListModel;
+
+// The Reports tab text of one student, a department or every student, one list
+// element per line, for a JList that only asks for the lines on screen. Only
+// the outline is worked out up front: which students are in the view and the
+// line each one starts at, counted from the subject rows without rendering
+// anything. A student's lines are rendered when first shown and only the last
+// few students' are kept, so memory does not grow with the size of the view.
+//
+// Built from a snapshot, or a copy of the one student, which later edits do not
+// change.
+class ReportLineModel extends AbstractListModel<String> {
+    private static final int HEADER_LINES = 7;
+    private static final int SEMESTER_LINES = 6; // besides one per subject
+    private static final int CUMULATIVE_LINES = 2;
+    private static final int RENDERED_STUDENTS = 64;
+
+    private final StudentStore students;
+    private final ReportCache cache;
+    private final int[] positions; // store positions of the students in the view
+    private final int[] firstLines; // positions.length + 1 entries
+    private final Map<Integer, String[]> rendered = new LinkedHashMap<Integer, String[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+            return size() > RENDERED_STUDENTS;
+        }
+    };
+
+    private ReportLineModel(StudentStore students, ReportCache cache, int[] positions, int[] firstLines) {
+        this.students = students;
+        this.cache = cache;
+        this.positions = positions;
+        this.firstLines = firstLines;
+    }
+
+    static ReportLineModel empty() {
+        return new ReportLineModel(new StudentStore(), new ReportCache(0), new int[0], new int[1]);
+    }
+
+    // The one student, without the blank line that separates students, from a
+    // copy such as StudentStore.copyAt() makes.
+    static ReportLineModel forStudent(Student copy, ReportCache cache) {
+        StudentStore students = StudentStore.of(Collections.singletonMap(copy.getRollNo(), copy));
+        return new ReportLineModel(students, cache, new int[] { 0 }, new int[] { 0, lineCount(copy.totals()) });
+    }
+
+    // Every student of the department (all of them for null), in store order and
+    // separated by a blank line. Reads the subject rows once, from the mapped
+    // file for students not loaded.
+    static ReportLineModel build(StudentStore snapshot, ReportCache cache, String department) {
+        int size = snapshot.size();
+        int[] subjects = new int[size];
+        int[] semesters = new int[size];
+        int[] last = { -1, 0 }; // position and semester of the previous row
+        snapshot.forEachRow((position, rowDepartment, semester, subject, marks, maxMarks, passing) -> {
+            subjects[position]++;
+            if (last[0] != position || last[1] != semester) {
+                semesters[position]++;
+                last[0] = position;
+                last[1] = semester;
+            }
+        });
+
+        int[] lines = new int[size];
+        for (int i = 0; i < size; i++) {
+            lines[i] = lineCount(semesters[i], subjects[i]);
+        }
+        // Loaded students can have semesters without subjects, which have no rows.
+        for (Student student : snapshot.loaded()) {
+            lines[snapshot.indexOf(student.getRollNo())] = lineCount(student.totals());
+        }
+
+        int[] positions = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (department == null || department.equals(snapshot.departmentAt(i))) {
+                positions[count++] = i;
+            }
+        }
+        positions = Arrays.copyOf(positions, count);
+        int[] firstLines = new int[count + 1];
+        for (int k = 0; k < count; k++) {
+            firstLines[k + 1] = firstLines[k] + lines[positions[k]] + 1;
+        }
+        return new ReportLineModel(snapshot, cache, positions, firstLines);
+    }
+
+    // Lines of ReportFormatter.appendReport() for the student.
+    private static int lineCount(StudentTotals totals) {
+        return lineCount(totals.semesterCount(), totals.subjects());
+    }
+
+    private static int lineCount(int semesters, int subjects) {
+        return HEADER_LINES + semesters * SEMESTER_LINES + subjects + (subjects > 0 ? CUMULATIVE_LINES : 0);
+    }
+
+    int studentCount() {
+        return positions.length;
+    }
+
+    // Index in the view of the student the line belongs to.
+    int studentOf(int line) {
+        int k = Arrays.binarySearch(firstLines, line);
+        return k >= 0 ? Math.min(k, positions.length - 1) : -k - 2;
+    }
+
+    // First line of the student with the roll number, or -1 if not in the view.
+    int firstLineOf(String rollNo) {
+        int position = students.indexOf(rollNo);
+        int k = Arrays.binarySearch(positions, position);
+        return position < 0 || k < 0 ? -1 : firstLines[k];
+    }
+
+    @Override
+    public int getSize() {
+        return firstLines[positions.length];
+    }
+
+    @Override
+    public String getElementAt(int line) {
+        int k = studentOf(line);
+        String[] lines = rendered.get(k);
+        if (lines == null) {
+            // Students not loaded are read in place, and not even that if the
+            // cache has them.
+            int position = positions[k];
+            String report = cache.cachedReport(students.keyAt(position), students.contentStampAt(position));
+            if (report == null) {
+                report = cache.report(students.studentAt(position));
+            }
+            lines = report.substring(0, report.length() - 1).split("\n", -1);
+            rendered.put(k, lines);
+        }
+        int offset = line - firstLines[k];
+        return offset < lines.length ? lines[offset] : "";
+    }
+}
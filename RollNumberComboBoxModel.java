@@ -0,0 +1,106 @@
+import java.util.Locale;
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+// One combo box's view of a shared RollNumberList: the items come from the list
+// and only the selection is the combo box's own. List changes are passed on as
+// they come, so the combo box only hears about the rows that changed, and the
+// first roll number is selected when there was nothing to select before.
+class RollNumberComboBoxModel extends AbstractListModel<String> implements ComboBoxModel<String>, ListDataListener {
+    private RollNumberList rollNos;
+    private Object selected;
+
+    RollNumberComboBoxModel(RollNumberList rollNos) {
+        this.rollNos = rollNos;
+        rollNos.addListDataListener(this);
+        selectFirstIfNone();
+    }
+
+    // Switches to the list of another store, e.g. after a load; one change event.
+    void setList(RollNumberList list) {
+        rollNos.removeListDataListener(this);
+        rollNos = list;
+        list.addListDataListener(this);
+        if (selected != null && list.indexOf((String) selected) < 0) {
+            selected = null;
+        }
+        fireContentsChanged(this, 0, Math.max(0, list.getSize() - 1));
+        selectFirstIfNone();
+    }
+
+    private void selectFirstIfNone() {
+        if (selected == null && rollNos.getSize() > 0) {
+            setSelectedItem(rollNos.getElementAt(0));
+        }
+    }
+
+    @Override
+    public void setSelectedItem(Object item) {
+        if (item == null ? selected != null : !item.equals(selected)) {
+            selected = item;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    @Override
+    public Object getSelectedItem() {
+        return selected;
+    }
+
+    @Override
+    public int getSize() {
+        return rollNos.getSize();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return rollNos.getElementAt(index);
+    }
+
+    @Override
+    public void intervalAdded(ListDataEvent e) {
+        fireIntervalAdded(this, e.getIndex0(), e.getIndex1());
+        selectFirstIfNone();
+    }
+
+    @Override
+    public void intervalRemoved(ListDataEvent e) {
+        fireIntervalRemoved(this, e.getIndex0(), e.getIndex1());
+    }
+
+    @Override
+    public void contentsChanged(ListDataEvent e) {
+        fireContentsChanged(this, e.getIndex0(), e.getIndex1());
+    }
+
+    // Type-ahead over the sorted list: keys typed within a second of each other
+    // build up a prefix, found by binary search instead of by scanning the items
+    // as JComboBox's default manager does.
+    KeySelection keySelection() {
+        return new KeySelection();
+    }
+
+    final class KeySelection implements JComboBox.KeySelectionManager {
+        private static final long TYPING_PAUSE_MILLIS = 1000;
+
+        private final StringBuilder prefix = new StringBuilder();
+        private long lastKeyTime;
+
+        @Override
+        public int selectionForKey(char key, ComboBoxModel<?> model) {
+            long now = System.currentTimeMillis();
+            if (now - lastKeyTime > TYPING_PAUSE_MILLIS) {
+                prefix.setLength(0);
+            }
+            lastKeyTime = now;
+            prefix.append(key);
+            String typed = prefix.toString();
+            int index = rollNos.firstWithPrefix(typed);
+            if (index < 0) {
+                index = rollNos.firstWithPrefix(typed.toUpperCase(Locale.ROOT));
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.*;
+import javax.swing.AbstractListModel;
+
+// Every roll number of a StudentStore in sorted order, shared by the roll-number
+// combo boxes through one RollNumberComboBoxModel each. A new student is one
+// binary search, one array shift and one intervalAdded event, rather than every
+// combo box being emptied and refilled. Being sorted, it doubles as the prefix
+// index for type-ahead.
+//
+// Built off the EDT before it is shown, then only changed on the EDT.
+class RollNumberList extends AbstractListModel<String> {
+    private String[] rollNos;
+    private int size;
+
+    private RollNumberList(String[] rollNos) {
+        this.rollNos = rollNos;
+        this.size = rollNos.length;
+    }
+
+    // The store's file part is mostly in roll-number order already, which the
+    // sort takes advantage of.
+    static RollNumberList build(StudentStore students) {
+        int count = students.size();
+        String[] rollNos = new String[count];
+        for (int i = 0; i < count; i++) {
+            rollNos[i] = students.keyAt(i);
+        }
+        Arrays.sort(rollNos);
+        return new RollNumberList(rollNos);
+    }
+
+    void add(String rollNo) {
+        int at = Arrays.binarySearch(rollNos, 0, size, rollNo);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        if (size == rollNos.length) {
+            rollNos = Arrays.copyOf(rollNos, Math.max(16, size + (size >> 1)));
+        }
+        System.arraycopy(rollNos, at, rollNos, at + 1, size - at);
+        rollNos[at] = rollNo;
+        size++;
+        fireIntervalAdded(this, at, at);
+    }
+
+    int indexOf(String rollNo) {
+        int at = Arrays.binarySearch(rollNos, 0, size, rollNo);
+        return at < 0 ? -1 : at;
+    }
+
+    // Index of the first roll number starting with the prefix, or -1.
+    int firstWithPrefix(String prefix) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rollNos[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < size && rollNos[low].startsWith(prefix) ? low : -1;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return rollNos[index];
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+// The departments of a store sharded by department and the data file of each,
+// kept next to the data file it replaces (student_data.dat.shards). Every shard
+// is a StudentDataFile with its own StudentDeltaFile, named after the data file
+// and the department as report exports are (student_data-CSE.dat), so one
+// department can be copied or moved as those two files plus its manifest line.
+//
+// Text: a "SGMS-SHARDS 1" line, then one "department<TAB>file name" line per
+// shard, with backslash, tab and line breaks in department names escaped. File
+// names are relative to the manifest. Rewritten through a temporary file.
+class ShardManifest {
+    private static final String HEADER = "SGMS-SHARDS 1";
+
+    private final Path path;
+    private final Map<String, Path> shards = new TreeMap<>();
+
+    private ShardManifest(Path path) {
+        this.path = path;
+    }
+
+    static Path pathFor(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".shards");
+    }
+
+    static boolean exists(Path dataFile) {
+        return Files.exists(pathFor(dataFile));
+    }
+
+    // An empty manifest that is only written once shards are added.
+    static ShardManifest create(Path dataFile) {
+        return new ShardManifest(pathFor(dataFile));
+    }
+
+    static ShardManifest read(Path dataFile) throws IOException {
+        ShardManifest manifest = new ShardManifest(pathFor(dataFile));
+        List<String> lines = Files.readAllLines(manifest.path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            throw new IOException("Not a shard manifest: " + manifest.path);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                throw new IOException("Malformed shard manifest line: " + line);
+            }
+            manifest.shards.put(unescape(line.substring(0, tab)),
+                    manifest.path.resolveSibling(line.substring(tab + 1)));
+        }
+        return manifest;
+    }
+
+    Set<String> departments() {
+        return Collections.unmodifiableSet(shards.keySet());
+    }
+
+    // The department's data file, or null if it has no shard.
+    Path shard(String department) {
+        return shards.get(department);
+    }
+
+    // Names a data file for a new department next to the manifest.
+    Path add(String department) {
+        String name = path.getFileName().toString();
+        name = name.substring(0, name.length() - ".shards".length());
+        int dot = name.lastIndexOf('.');
+        String safe = department.replaceAll("[^A-Za-z0-9_.-]", "_");
+        String base = dot > 0 ? name.substring(0, dot) + "-" + safe : name + "-" + safe;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        Path shard = path.resolveSibling(base + extension);
+        for (int i = 2; shards.containsValue(shard); i++) {
+            shard = path.resolveSibling(base + "-" + i + extension);
+        }
+        shards.put(department, shard);
+        return shard;
+    }
+
+    // A copy to write later, which shards added meanwhile do not change.
+    ShardManifest copy() {
+        ShardManifest copy = new ShardManifest(path);
+        copy.shards.putAll(shards);
+        return copy;
+    }
+
+    void write() throws IOException {
+        StringBuilder text = new StringBuilder(HEADER).append('\n');
+        for (Map.Entry<String, Path> entry : shards.entrySet()) {
+            text.append(escape(entry.getKey())).append('\t').append(entry.getValue().getFileName()).append('\n');
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String escape(String department) {
+        return department.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                c = text.charAt(++i);
+                c = c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+}
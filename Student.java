@@ -0,0 +1,205 @@
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+// Subjects are only added through addSubject/addSemesterSubjects, under the
+// student's lock; readers never lock. The semester map is replaced rather than
+// changed when a semester is added, and a SubjectList publishes appended rows,
+// so a reader sees each list as some consistent prefix.
+class Student implements Serializable {
+    private static final long serialVersionUID = -8744107774859875754L;
+
+    private String rollNo;
+    private String name;
+    private String department;
+    private volatile Map<Integer, List<Subject>> semesterSubjects;
+    private transient volatile int version;
+    // The version last written to disk, -1 for a student never saved.
+    private transient int savedVersion = -1;
+    // Built on first use (and after a re-grade), then kept up to date by the
+    // mutators; published after the subjects it covers.
+    private transient volatile StudentTotals totals;
+
+    public Student(String rollNo, String name, String department) {
+        this.rollNo = rollNo;
+        this.name = name;
+        this.department = department;
+        this.semesterSubjects = Collections.emptyMap();
+    }
+
+    // For loaders that build the lists before the student is shared; the map is
+    // taken over, not copied. The student counts as saved.
+    Student(String rollNo, String name, String department, Map<Integer, List<Subject>> semesterSubjects) {
+        this.rollNo = rollNo;
+        this.name = name;
+        this.department = department;
+        this.semesterSubjects = Collections.unmodifiableMap(semesterSubjects);
+        for (List<Subject> subjects : semesterSubjects.values()) {
+            ((SubjectList) subjects).markSaved(subjects.size());
+        }
+        this.savedVersion = 0;
+    }
+
+    public String getRollNo() {
+        return rollNo;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+
+    // Read-only view; it does not change once returned except for subjects
+    // appended to its lists.
+    public Map<Integer, List<Subject>> getSemesterSubjects() {
+        return semesterSubjects;
+    }
+
+    // Appends atomically and returns the subject's position in the semester. The
+    // subject is graded with this student's department's scheme from then on.
+    // A semester read in place from the data file is first moved to the shared
+    // GradeStore.
+    public synchronized int addSubject(int semester, Subject subject) {
+        int row = subject.sharedRow();
+        GradeStore.SHARED.setDepartment(row, department);
+        SubjectList subjects = (SubjectList) semesterSubjects.get(semester);
+        int position;
+        if (subjects == null || !subjects.isShared()) {
+            subjects = subjects == null ? new SubjectList() : subjects.shared();
+            position = subjects.append(row);
+            publish(semester, subjects);
+        } else {
+            position = subjects.append(row);
+        }
+        if (totals != null) {
+            totals = totals.plus(semester, row);
+        }
+        version++;
+        return position;
+    }
+
+    // Replaces the semester's subjects with a copy of the given list.
+    public synchronized void addSemesterSubjects(int semester, List<Subject> subjects) {
+        SubjectList copy = SubjectList.of(subjects).shared().copy();
+        for (int i = 0; i < copy.size(); i++) {
+            GradeStore.SHARED.setDepartment(copy.row(i), department);
+        }
+        publish(semester, copy);
+        if (totals != null) {
+            totals = totals.withSemester(semester, copy);
+        }
+        version++;
+    }
+
+    private void publish(int semester, SubjectList subjects) {
+        Map<Integer, List<Subject>> updated = new HashMap<>(semesterSubjects);
+        updated.put(semester, subjects);
+        semesterSubjects = Collections.unmodifiableMap(updated);
+    }
+
+    // Read it before getSemesterSubjects(): every list then holds at least as
+    // many subjects as these totals count for its semester.
+    StudentTotals totals() {
+        StudentTotals current = totals;
+        return current != null && current.isCurrent() ? current : computeTotals();
+    }
+
+    private synchronized StudentTotals computeTotals() {
+        if (totals == null || !totals.isCurrent()) {
+            totals = StudentTotals.of(semesterSubjects);
+        }
+        return totals;
+    }
+
+    // Changes whenever the subjects do, and is bumped after the change is
+    // visible. Lets caches tell a stale rendering apart without comparing the
+    // subjects themselves. Re-grading changes grades without touching the
+    // student, so the GradeStore's grading version is part of it.
+    long contentStamp() {
+        return contentStamp(version);
+    }
+
+    static long contentStamp(int version) {
+        return ((long) GradeStore.SHARED.gradingVersion() << 32) | (version & 0xffffffffL);
+    }
+
+    // Changed since it was last saved, or never saved.
+    synchronized boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    // Copy holding only the semesters changed since the last save, for a
+    // differential save; pass it to markSaved() once it is on disk.
+    synchronized Student dirtyCopy() {
+        Map<Integer, List<Subject>> subjects = new HashMap<>();
+        for (Map.Entry<Integer, List<Subject>> entry : semesterSubjects.entrySet()) {
+            SubjectList list = (SubjectList) entry.getValue();
+            if (!list.isSaved()) {
+                subjects.put(entry.getKey(), list.copy());
+            }
+        }
+        Student copy = new Student(rollNo, name, department, subjects);
+        copy.version = version;
+        return copy;
+    }
+
+    // Marks what the copy (from copy() or dirtyCopy()) held as saved. Subjects
+    // added since it was taken, and semesters replaced since, stay dirty.
+    synchronized void markSaved(Student saved) {
+        for (Map.Entry<Integer, List<Subject>> entry : saved.semesterSubjects.entrySet()) {
+            SubjectList written = (SubjectList) entry.getValue();
+            SubjectList current = (SubjectList) semesterSubjects.get(entry.getKey());
+            if (current != null && current.startsWith(written)) {
+                current.markSaved(written.size());
+            }
+        }
+        if (saved.version == version) {
+            savedVersion = version;
+        }
+    }
+
+    // Consistent copy; the lists only hold row numbers, so copying them is cheap.
+    public synchronized Student copy() {
+        Map<Integer, List<Subject>> subjects = new HashMap<>();
+        for (Map.Entry<Integer, List<Subject>> entry : semesterSubjects.entrySet()) {
+            subjects.put(entry.getKey(), ((SubjectList) entry.getValue()).copy());
+        }
+        Student copy = new Student(rollNo, name, department, subjects);
+        copy.version = version;
+        copy.totals = totals;
+        return copy;
+    }
+
+    // Serialized with plain ArrayLists so student_data.ser keeps its original shape.
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        Map<Integer, List<Subject>> plain = new HashMap<>();
+        for (Map.Entry<Integer, List<Subject>> entry : semesterSubjects.entrySet()) {
+            plain.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("rollNo", rollNo);
+        fields.put("name", name);
+        fields.put("department", department);
+        fields.put("semesterSubjects", plain);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        Map<Integer, List<Subject>> subjects = new HashMap<>();
+        for (Map.Entry<Integer, List<Subject>> entry : semesterSubjects.entrySet()) {
+            SubjectList list = SubjectList.of(entry.getValue());
+            // Subject.readObject put the rows in a GradeStore.
+            GradeStore grades = (GradeStore) list.grades();
+            for (int i = 0; i < list.size(); i++) {
+                grades.setDepartment(list.row(i), department);
+            }
+            subjects.put(entry.getKey(), list);
+        }
+        semesterSubjects = Collections.unmodifiableMap(subjects);
+        savedVersion = -1;
+    }
+}
@@ -0,0 +1,561 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Versioned binary snapshot of all students. Subject names and departments go
+// through a string dictionary and the subject rows are stored as primitive
+// columns; grade and status are recomputed from the marks on load.
+//
+// Layout (big-endian), version 2:
+//   header     magic, version, dictionaryCount, studentCount, rowCount, generation,
+//              directoryOffset, columnsOffset, dictionaryOffset (longs)
+//   students   per student: rollNo, name, departmentId, firstRow, rowCount
+//   dictionary dictionaryCount x (length, UTF-8 bytes)
+//   directory  studentCount x long offset of each student record, sorted by roll number
+//   columns    semester[], subjectId[], marks[], maxMarks[], passing[] (rowCount each)
+//
+// Version 1 files put the dictionary right after a 40-byte header and leave the
+// directory unsorted; they are still readable. The generation is random and
+// non-zero for every file written, and ties a StudentDeltaFile to its base;
+// older files have 0 there.
+//
+// An opened file is memory-mapped and read in place: roll numbers are found by
+// binary search over the sorted directory and a Student is only built on demand.
+// It stays mapped until the buffer is collected, and Windows will not replace or
+// delete a mapped file, so there the file is renamed aside instead (to
+// student_data.dat.old1 and so on) and deleted once nothing maps it. One mapping
+// and int offsets cap a file at 2 GB; write() refuses a larger one before it
+// replaces anything.
+class StudentDataFile {
+    static final int MAGIC = 0x53474D44; // "SGMD"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 48;
+    private static final int V1_HEADER_SIZE = 40;
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private final ByteBuffer buffer;
+    private final String[] dictionary;
+    private final int studentCount;
+    private final int directory;
+    private final int semesters;
+    private final int subjectIds;
+    private final int marks;
+    private final int maxMarks;
+    private final int passing;
+    private final int generation;
+    private int[] order; // version 1 only: directory positions in roll-number order
+
+    private StudentDataFile(ByteBuffer buffer, Path path) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < V1_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a student data file: " + path);
+        }
+        int version = buffer.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported student data version " + version);
+        }
+        int dictionaryCount = buffer.getInt(8);
+        studentCount = buffer.getInt(12);
+        int rowCount = buffer.getInt(16);
+        generation = buffer.getInt(20);
+        directory = (int) buffer.getLong(24);
+        semesters = (int) buffer.getLong(32);
+        subjectIds = semesters + rowCount * 4;
+        marks = subjectIds + rowCount * 4;
+        maxMarks = marks + rowCount * 8;
+        passing = maxMarks + rowCount * 8;
+
+        int position = version == 1 ? V1_HEADER_SIZE : (int) buffer.getLong(40);
+        dictionary = new String[dictionaryCount];
+        for (int i = 0; i < dictionaryCount; i++) {
+            int length = buffer.getInt(position);
+            dictionary[i] = getString(buffer, position);
+            position += 4 + length;
+        }
+
+        if (version == 1) {
+            Integer[] sorted = new Integer[studentCount];
+            String[] keys = new String[studentCount];
+            for (int i = 0; i < studentCount; i++) {
+                sorted[i] = i;
+                keys[i] = getString(buffer, (int) buffer.getLong(directory + i * 8));
+            }
+            Arrays.sort(sorted, Comparator.comparing(i -> keys[i]));
+            order = new int[studentCount];
+            for (int i = 0; i < studentCount; i++) {
+                order[i] = sorted[i];
+            }
+        }
+    }
+
+    static StudentDataFile open(Path path) throws IOException {
+        finishReplace(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_SIZE) {
+                throw new IOException("Student data file is over 2 GB: " + path);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new StudentDataFile(buffer.order(ByteOrder.BIG_ENDIAN), path);
+        }
+    }
+
+    // Builds every student, read in place; StudentStore is the lazy alternative.
+    static Map<String, Student> read(Path path) throws IOException {
+        StudentDataFile file = open(path);
+        Map<String, Student> students = new HashMap<>(file.size() * 4 / 3 + 1);
+        for (int i = 0; i < file.size(); i++) {
+            Student student = file.view(i);
+            students.put(student.getRollNo(), student);
+        }
+        return students;
+    }
+
+    int size() {
+        return studentCount;
+    }
+
+    int generation() {
+        return generation;
+    }
+
+    // Index of the student in roll-number order, or -1.
+    int indexOf(String rollNo) {
+        int low = 0;
+        int high = studentCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = rollNo(mid).compareTo(rollNo);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int record(int index) {
+        return (int) buffer.getLong(directory + (order == null ? index : order[index]) * 8);
+    }
+
+    String rollNo(int index) {
+        return getString(buffer, record(index));
+    }
+
+    String name(int index) {
+        int position = record(index);
+        return getString(buffer, position + 4 + buffer.getInt(position));
+    }
+
+    String department(int index) {
+        return dictionary[buffer.getInt(fieldsOffset(index))];
+    }
+
+    // Offset of the departmentId, firstRow, rowCount triple of a student record.
+    private int fieldsOffset(int index) {
+        int position = record(index);
+        position += 4 + buffer.getInt(position);
+        return position + 4 + buffer.getInt(position);
+    }
+
+    // The student with its rows added to the GradeStore, to be kept and edited.
+    Student materialize(int index) {
+        Student view = view(index);
+        Map<Integer, List<Subject>> subjects = new HashMap<>();
+        for (Map.Entry<Integer, List<Subject>> entry : view.getSemesterSubjects().entrySet()) {
+            SubjectList list = ((SubjectList) entry.getValue()).shared();
+            for (int i = 0; i < list.size(); i++) {
+                GradeStore.SHARED.setDepartment(list.row(i), view.getDepartment());
+            }
+            subjects.put(entry.getKey(), list);
+        }
+        return new Student(view.getRollNo(), view.getName(), view.getDepartment(), subjects);
+    }
+
+    // The student with its subjects read in place from the columns, so that
+    // building one adds no rows to the GradeStore and it can simply be dropped.
+    // Editing a semester moves it to the GradeStore first.
+    Student view(int index) {
+        int position = record(index);
+        String rollNo = getString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String name = getString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String department = dictionary[buffer.getInt(position)];
+        int firstRow = buffer.getInt(position + 4);
+        int count = buffer.getInt(position + 8);
+
+        GradeRows rows = new Rows(department);
+        Map<Integer, List<Subject>> subjects = new HashMap<>();
+        for (int row = firstRow; row < firstRow + count; row++) {
+            int semester = buffer.getInt(semesters + row * 4);
+            ((SubjectList) subjects.computeIfAbsent(semester, k -> new SubjectList(rows))).append(row);
+        }
+        return new Student(rollNo, name, department, subjects);
+    }
+
+    // One student's rows in the columns; grade and status are worked out on each
+    // read, the grade with the department's current scheme.
+    private final class Rows extends GradeRows {
+        private final String department;
+
+        Rows(String department) {
+            this.department = department;
+        }
+
+        String name(int row) {
+            return dictionary[buffer.getInt(subjectIds + row * 4)];
+        }
+
+        double marks(int row) {
+            return buffer.getDouble(marks + row * 8);
+        }
+
+        double maxMarks(int row) {
+            return buffer.getDouble(maxMarks + row * 8);
+        }
+
+        double passingPercentage(int row) {
+            return buffer.getDouble(passing + row * 8);
+        }
+
+        byte gradeCode(int row) {
+            return GradeStore.SHARED.gradeCode(department, percentage(row));
+        }
+
+        byte statusCode(int row) {
+            return percentage(row) >= passingPercentage(row) ? GradeStore.PASS : GradeStore.FAIL;
+        }
+    }
+
+    // Reads a student's subject rows straight from the columns, without creating
+    // Subjects (and so without adding rows to the GradeStore). The visitor is
+    // given `position` as the student's index.
+    void forEachRow(int index, int position, StudentStore.RowVisitor visitor) {
+        int fields = fieldsOffset(index);
+        String department = dictionary[buffer.getInt(fields)];
+        int firstRow = buffer.getInt(fields + 4);
+        int count = buffer.getInt(fields + 8);
+        for (int row = firstRow; row < firstRow + count; row++) {
+            visitor.visit(position, department, buffer.getInt(semesters + row * 4),
+                    dictionary[buffer.getInt(subjectIds + row * 4)],
+                    buffer.getDouble(marks + row * 8),
+                    buffer.getDouble(maxMarks + row * 8),
+                    buffer.getDouble(passing + row * 8));
+        }
+    }
+
+    // Writes to a temporary sibling and renames it over the target once it is on disk.
+    // The students are visited once, so a lazily materializing view can be passed in.
+    // Returns the new file's generation.
+    static int write(Path target, Iterable<Student> students) throws IOException {
+        Path tmp = tmpPath(target);
+        int generation;
+        do {
+            generation = ThreadLocalRandom.current().nextInt();
+        } while (generation == 0);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(channel, students, generation);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        replace(tmp, target);
+        return generation;
+    }
+
+    // Whether there is a file to open, or a replacement open() will finish.
+    static boolean exists(Path path) throws IOException {
+        return Files.exists(path) || Files.exists(tmpPath(path)) && !retired(path).isEmpty();
+    }
+
+    // Deletes the file, or renames it aside where it is still mapped.
+    static void delete(Path path) throws IOException {
+        Files.deleteIfExists(tmpPath(path));
+        try {
+            Files.deleteIfExists(path);
+        } catch (FileSystemException e) {
+            retire(path);
+        }
+    }
+
+    private static Path tmpPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    // Where the target is still mapped (Windows) it is renamed aside first, which
+    // Windows allows, and the new file then renamed into place. A crash in between
+    // leaves no target but the new file complete at its temporary name, which
+    // finishReplace() moves into place on the next open.
+    private static void replace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileSystemException e) {
+            if (!Files.exists(target)) {
+                throw e;
+            }
+            retire(target);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        deleteRetired(target);
+    }
+
+    private static void finishReplace(Path path) throws IOException {
+        List<Path> retired = retired(path);
+        if (!retired.isEmpty() && !Files.exists(path) && Files.exists(tmpPath(path))) {
+            Files.move(tmpPath(path), path, StandardCopyOption.ATOMIC_MOVE);
+        }
+        deleteRetired(path);
+    }
+
+    private static void retire(Path path) throws IOException {
+        for (int i = 1;; i++) {
+            Path old = path.resolveSibling(path.getFileName() + ".old" + i);
+            if (!Files.exists(old)) {
+                Files.move(path, old);
+                return;
+            }
+        }
+    }
+
+    private static List<Path> retired(Path path) throws IOException {
+        String prefix = path.getFileName() + ".old";
+        List<Path> retired = new ArrayList<>();
+        Path directory = path.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(directory, sibling -> {
+            String name = sibling.getFileName().toString();
+            return name.length() > prefix.length() && name.startsWith(prefix)
+                    && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+        })) {
+            for (Path sibling : siblings) {
+                retired.add(sibling);
+            }
+        }
+        return retired;
+    }
+
+    // Files renamed aside are left for later while this or another process still maps them.
+    private static void deleteRetired(Path path) throws IOException {
+        for (Path old : retired(path)) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                // Still mapped.
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, Iterable<Student> students, int generation) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        List<String> rollNos = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        Columns columns = new Columns();
+
+        ChannelWriter out = new ChannelWriter(channel, HEADER_SIZE);
+        for (Student student : students) {
+            int firstRow = columns.size;
+            for (Map.Entry<Integer, List<Subject>> entry : student.getSemesterSubjects().entrySet()) {
+                for (Subject subject : entry.getValue()) {
+                    columns.add(entry.getKey(), intern(dictionary, subject.getName()), subject);
+                }
+            }
+            rollNos.add(student.getRollNo());
+            offsets.add(out.position());
+            out.putString(student.getRollNo());
+            out.putString(student.getName());
+            out.putInt(intern(dictionary, student.getDepartment()));
+            out.putInt(firstRow);
+            out.putInt(columns.size - firstRow);
+        }
+
+        long dictionaryOffset = out.position();
+        for (String value : dictionary.keySet()) {
+            out.putString(value);
+        }
+
+        Integer[] sorted = new Integer[rollNos.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, Comparator.comparing(rollNos::get));
+        long directoryOffset = out.position();
+        for (int i : sorted) {
+            out.putLong(offsets.get(i));
+        }
+
+        long columnsOffset = (out.position() + 7) & ~7L;
+        out.pad(columnsOffset);
+        for (int i = 0; i < columns.size; i++) {
+            out.putInt(columns.semesters[i]);
+        }
+        for (int i = 0; i < columns.size; i++) {
+            out.putInt(columns.subjectIds[i]);
+        }
+        for (int i = 0; i < columns.size; i++) {
+            out.putDouble(columns.marks[i]);
+        }
+        for (int i = 0; i < columns.size; i++) {
+            out.putDouble(columns.maxMarks[i]);
+        }
+        for (int i = 0; i < columns.size; i++) {
+            out.putDouble(columns.passing[i]);
+        }
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(dictionary.size());
+        header.putInt(rollNos.size());
+        header.putInt(columns.size);
+        header.putInt(generation);
+        header.putLong(directoryOffset);
+        header.putLong(columnsOffset);
+        header.putLong(dictionaryOffset);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static int intern(Map<String, Integer> dictionary, String value) {
+        Integer id = dictionary.putIfAbsent(value, dictionary.size());
+        return id == null ? dictionary.size() - 1 : id;
+    }
+
+    // Reads the HashMap written by the original ObjectOutputStream-based saveData(),
+    // to be converted: the students' rows are kept in a GradeStore of their own
+    // that is dropped with them, graded with the standard scheme.
+    @SuppressWarnings("unchecked")
+    static Map<String, Student> readLegacy(Path path) throws IOException {
+        try (ObjectInputStream ois = new LegacyInput(new BufferedInputStream(Files.newInputStream(path)))) {
+            return (Map<String, Student>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable legacy data file: " + e.getMessage(), e);
+        }
+    }
+
+    // Tells Subject.readObject where the rows go.
+    static final class LegacyInput extends ObjectInputStream {
+        final GradeStore grades = new GradeStore();
+
+        LegacyInput(InputStream in) throws IOException {
+            super(in);
+        }
+    }
+
+    // Converts the legacy file to a data file at the target.
+    static void convertLegacy(Path legacy, Path target) throws IOException {
+        write(target, readLegacy(legacy).values());
+    }
+
+    private static String getString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Subject rows gathered while the student records are written.
+    private static class Columns {
+        int size;
+        int[] semesters = new int[64];
+        int[] subjectIds = new int[64];
+        double[] marks = new double[64];
+        double[] maxMarks = new double[64];
+        double[] passing = new double[64];
+
+        void add(int semester, int subjectId, Subject subject) {
+            if (size == semesters.length) {
+                int capacity = size * 2;
+                semesters = Arrays.copyOf(semesters, capacity);
+                subjectIds = Arrays.copyOf(subjectIds, capacity);
+                marks = Arrays.copyOf(marks, capacity);
+                maxMarks = Arrays.copyOf(maxMarks, capacity);
+                passing = Arrays.copyOf(passing, capacity);
+            }
+            semesters[size] = semester;
+            subjectIds[size] = subjectId;
+            marks[size] = subject.getMarks();
+            maxMarks[size] = subject.getMaxMarks();
+            passing[size] = subject.getPassingPercentage();
+            size++;
+        }
+    }
+
+    // Sequential writer over a reusable buffer; tracks the absolute file position.
+    private static class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        private long flushed;
+
+        ChannelWriter(FileChannel channel, long start) {
+            this.channel = channel;
+            this.flushed = start;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        void pad(long target) throws IOException {
+            while (position() < target) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (position() > MAX_SIZE) {
+                throw new IOException("Student data is over 2 GB, more than one data file can hold");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer, flushed);
+            }
+            buffer.clear();
+        }
+    }
+}
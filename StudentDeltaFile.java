@@ -0,0 +1,246 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Changes saved on top of a StudentDataFile since it was written, so that a save
+// costs what changed rather than the whole dataset. Each save appends one
+// segment framed with its length and a CRC; a segment torn by a crash fails the
+// check and is dropped together with everything after it, as in GradeJournal.
+//
+// Layout (big-endian):
+//   header    magic, version, base generation, reserved (ints)
+//   segments  length, crc, then the students of one save: count, and per student
+//             rollNo, name, department, semester count, and per semester its
+//             number, row count and rows (subject, marks, maxMarks, passing)
+//
+// A segment holds only the semesters that changed, each in full; a later
+// segment replaces what an earlier one (or the base) had for that semester.
+// The base generation ties the file to one data file: after the data file has
+// been rewritten, a delta left from before is ignored rather than replayed.
+class StudentDeltaFile implements Closeable {
+    static final int MAGIC = 0x53474444; // "SGDD"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final FileChannel channel;
+    private int generation;
+
+    private StudentDeltaFile(FileChannel channel, int generation) {
+        this.channel = channel;
+        this.generation = generation;
+    }
+
+    static Path pathFor(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".delta");
+    }
+
+    // An empty delta for the given base, replacing whatever was at the path.
+    static StudentDeltaFile create(Path path, int generation) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            StudentDeltaFile delta = new StudentDeltaFile(channel, generation);
+            delta.reset(generation);
+            return delta;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Replays the segments into the students if the file belongs to the given
+    // base, then returns it opened for appending after the last intact segment.
+    // Otherwise it is emptied and started over for that base.
+    static StudentDeltaFile open(Path path, int generation, StudentStore students) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            StudentDeltaFile delta = new StudentDeltaFile(channel, generation);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (readFully(channel, header, 0) < HEADER_SIZE) {
+                delta.reset(generation);
+                return delta;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a student delta file: " + path);
+            }
+            if (header.getInt() != generation || generation == 0) {
+                delta.reset(generation);
+                return delta;
+            }
+
+            long validEnd = HEADER_SIZE;
+            ByteBuffer frame = ByteBuffer.allocate(8);
+            while (true) {
+                frame.clear();
+                if (readFully(channel, frame, validEnd) < 8) {
+                    break;
+                }
+                frame.flip();
+                int length = frame.getInt();
+                int checksum = frame.getInt();
+                if (length <= 0 || validEnd + 8 + length > channel.size()) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, validEnd + 8);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(payload.rewind(), students);
+                validEnd += 8 + length;
+            }
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+            return delta;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    // Replayed students end up as saved, since this is what is on disk. Students
+    // the base does not have are built the way the data file builds its own.
+    private static void apply(ByteBuffer in, StudentStore students) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            String rollNo = getString(in);
+            String name = getString(in);
+            String department = getString(in);
+            Map<Integer, List<Subject>> semesters = new HashMap<>();
+            int semesterCount = in.getInt();
+            for (int s = 0; s < semesterCount; s++) {
+                int semester = in.getInt();
+                int rows = in.getInt();
+                SubjectList subjects = new SubjectList();
+                for (int r = 0; r < rows; r++) {
+                    subjects.append(new Subject(getString(in), in.getDouble(), in.getDouble(), in.getDouble()).row());
+                }
+                semesters.put(semester, subjects);
+            }
+            Student student = students.get(rollNo);
+            if (student == null) {
+                for (List<Subject> subjects : semesters.values()) {
+                    for (int r = 0; r < subjects.size(); r++) {
+                        GradeStore.SHARED.setDepartment(((SubjectList) subjects).row(r), department);
+                    }
+                }
+                students.put(rollNo, new Student(rollNo, name, department, semesters));
+            } else {
+                for (Map.Entry<Integer, List<Subject>> entry : semesters.entrySet()) {
+                    student.addSemesterSubjects(entry.getKey(), entry.getValue());
+                }
+                student.markSaved(student.copy());
+            }
+        }
+    }
+
+    // Appends one segment with the given students (from Student.dirtyCopy()) and
+    // forces it to disk.
+    synchronized void append(List<Student> students) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + students.size() * 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(students.size());
+        for (Student student : students) {
+            putString(out, student.getRollNo());
+            putString(out, student.getName());
+            putString(out, student.getDepartment());
+            Map<Integer, List<Subject>> semesters = student.getSemesterSubjects();
+            out.writeInt(semesters.size());
+            for (Map.Entry<Integer, List<Subject>> entry : semesters.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Subject subject : entry.getValue()) {
+                    putString(out, subject.getName());
+                    out.writeDouble(subject.getMarks());
+                    out.writeDouble(subject.getMaxMarks());
+                    out.writeDouble(subject.getPassingPercentage());
+                }
+            }
+        }
+        out.flush();
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt(payload.length);
+        frame.putInt((int) crc.getValue());
+        frame.flip();
+        ByteBuffer body = ByteBuffer.wrap(payload);
+        long start = channel.position();
+        try {
+            while (frame.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[] { frame, body });
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Leaves no partial segment for the next append to follow.
+            channel.truncate(start);
+            channel.position(start);
+            throw e;
+        }
+    }
+
+    // Empties the file for a new base, e.g. once the data file has been rewritten.
+    synchronized void reset(int generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(generation);
+        header.putInt(0);
+        header.flip();
+        channel.truncate(0);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.position(HEADER_SIZE);
+        channel.force(true);
+        this.generation = generation;
+    }
+
+    synchronized int generation() {
+        return generation;
+    }
+
+    synchronized long size() throws IOException {
+        return channel.position();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,128 +1,85 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.*;
 import java.util.*;
 import java.util.List;
-
-class Student implements Serializable {
-    private String rollNo;
-    private String name;
-    private String department;
-    private Map<Integer, List<Subject>> semesterSubjects;
-
-    public Student(String rollNo, String name, String department) {
-        this.rollNo = rollNo;
-        this.name = name;
-        this.department = department;
-        this.semesterSubjects = new HashMap<>();
-    }
-
-    public String getRollNo() {
-        return rollNo;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public String getDepartment() {
-        return department;
-    }
-
-    public Map<Integer, List<Subject>> getSemesterSubjects() {
-        return semesterSubjects;
-    }
-
-    public void addSemesterSubjects(int semester, List<Subject> subjects) {
-        semesterSubjects.put(semester, subjects);
-    }
-}
-
-class Subject implements Serializable {
-    private String name;
-    private double marks;
-    private double maxMarks;
-    private double passingPercentage;
-    private double percentage;
-    private String grade;
-    private String status;
-
-    public Subject(String name, double marks, double maxMarks, double passingPercentage) {
-        this.name = name;
-        this.marks = marks;
-        this.maxMarks = maxMarks;
-        this.passingPercentage = passingPercentage;
-        calculateResults();
-    }
-
-    private void calculateResults() {
-        this.percentage = (marks / maxMarks) * 100;
-        this.grade = calculateGrade();
-        this.status = percentage >= passingPercentage ? "PASS" : "FAIL";
-    }
-
-    private String calculateGrade() {
-        if (percentage >= 90)
-            return "A+";
-        else if (percentage >= 80)
-            return "A";
-        else if (percentage >= 70)
-            return "B";
-        else if (percentage >= 60)
-            return "C";
-        else if (percentage >= 50)
-            return "D";
-        else
-            return "F";
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public double getMarks() {
-        return marks;
-    }
-
-    public double getMaxMarks() {
-        return maxMarks;
-    }
-
-    public double getPercentage() {
-        return percentage;
-    }
-
-    public String getGrade() {
-        return grade;
-    }
-
-    public String getStatus() {
-        return status;
-    }
-}
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
 
 public class StudentGradeManagementSystem extends JFrame {
-    private Map<String, Student> students;
+    private static final Path DATA_FILE = Paths.get("student_data.dat");
+    private static final Path LEGACY_DATA_FILE = Paths.get("student_data.ser");
+    private static final Path JOURNAL_FILE = Paths.get("student_data.journal");
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("load");
+    private static final Metrics.Timer SAVE_PREPARE_TIMER = Metrics.timer("save.prepare");
+    private static final Metrics.Timer SAVE_WRITE_TIMER = Metrics.timer("save.write");
+    private static final Metrics.Timer STUDENT_TABLE_TIMER = Metrics.timer("table.students");
+    private static final Metrics.Timer GRADES_TABLE_TIMER = Metrics.timer("table.grades");
+    private static final Metrics.Timer REPORT_TIMER = Metrics.timer("report");
+    private static final Metrics.Timer EXPORT_TIMER = Metrics.timer("export");
+    private static final Metrics.Timer ANALYTICS_TIMER = Metrics.timer("analytics");
+    private static final Metrics.Counter EDITS = Metrics.counter("edits");
+    private static final Metrics.Counter FULL_SAVES = Metrics.counter("saves.full");
+    private static final Metrics.Counter DIFFERENTIAL_SAVES = Metrics.counter("saves.differential");
+    private static final String REPORT_SCOPE_STUDENT = "Selected Student";
+    private static final String REPORT_SCOPE_ALL = "All Students";
+    // Sizes every report line without measuring it: about a subject row's width.
+    private static final String REPORT_LINE_PROTOTYPE = "0".repeat(72);
+
+    // Volatile for the API server, which reads them from its own threads.
+    private volatile StudentStore students;
+    private GradeJournal journal;
+    private final StudentSaver saver = new StudentSaver(DATA_FILE, departmentsToOpen());
+    // -Dautosave.seconds=0 turns autosaving off.
+    private final AutoSaver autoSaver = new AutoSaver(Long.getLong("autosave.seconds", 2) * 1000,
+            Integer.getInteger("autosave.edits", 500), () -> saveData(false, null), saver::bytesWritten);
+    private volatile GradeStatistics statistics = new GradeStatistics();
+    private StudentIndex index;
+    private DepartmentRanking ranking;
+    private RollNumberList rollNumbers;
+    private final ReportCache reportCache = new ReportCache();
+    private Runnable activeFilter;
     private JTabbedPane tabbedPane;
-    private DefaultTableModel studentTableModel;
-    private DefaultTableModel gradesTableModel;
+    private StudentTableModel studentTableModel;
+    private GradesTableModel gradesTableModel;
     private JTable studentTable;
     private JTable gradesTable;
     private JComboBox<String> studentSelector;
     private JComboBox<Integer> semesterSelector;
     private JComboBox<String> reportStudentSelector; // Declare this at the class level
+    private final List<RollNumberComboBoxModel> rollNumberModels = new ArrayList<>();
+    private final ExecutorService persistence = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("persistence").factory());
+    private boolean loading;
+    private GradeServer server;
+    private int pendingSaves;
+    private boolean prepareFailed; // the last save could not be prepared
 
     public StudentGradeManagementSystem() {
-        students = new HashMap<>();
+        students = new StudentStore();
+        index = StudentIndex.build(students);
+        ranking = DepartmentRanking.build(students);
+        rollNumbers = RollNumberList.build(students);
+        // Read on the EDT, where the Diagnostics dialog dumps the metrics.
+        Metrics.gauge("students", () -> students.size());
+        Metrics.gauge("autosave.pending.edits", autoSaver::pendingEdits);
+        Metrics.gauge("autosave.last.save.ms", autoSaver::lastSaveMillis);
+        Metrics.gauge("autosave.last.save.bytes", autoSaver::lastSaveBytes);
+        Metrics.gauge("saves.bytes.written", autoSaver::bytesWritten);
         initializeGUI();
         loadData();
     }
 
     private void initializeGUI() {
         setTitle("Student Grade Management System");
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         setSize(800, 600);
         setLocationRelativeTo(null);
 
@@ -131,13 +88,15 @@ public class StudentGradeManagementSystem extends JFrame {
         tabbedPane.addTab("Student Management", createStudentPanel());
         tabbedPane.addTab("Grade Management", createGradePanel());
         tabbedPane.addTab("Reports", createReportPanel());
+        tabbedPane.addTab("Analytics", createAnalyticsPanel());
 
         add(tabbedPane);
+        addMenuBar();
 
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                saveData();
+                exitApplication();
             }
         });
     }
@@ -145,16 +104,71 @@ public class StudentGradeManagementSystem extends JFrame {
     private JPanel createStudentPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        String[] columns = { "Roll No", "Name", "Department" };
-        studentTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        studentTableModel = new StudentTableModel(students);
         studentTable = new JTable(studentTableModel);
         JScrollPane scrollPane = new JScrollPane(studentTable);
 
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JTextField nameFilter = new JTextField(8);
+        JTextField deptFilter = new JTextField(6);
+        JTextField subjectFilter = new JTextField(8);
+        JTextField minFilter = new JTextField(4);
+        JTextField maxFilter = new JTextField(4);
+        JCheckBox failingFilter = new JCheckBox("Failing only");
+        JButton searchButton = new JButton("Search");
+        JButton clearButton = new JButton("Clear");
+
+        filterPanel.add(new JLabel("Name:"));
+        filterPanel.add(nameFilter);
+        filterPanel.add(new JLabel("Dept:"));
+        filterPanel.add(deptFilter);
+        filterPanel.add(new JLabel("Subject:"));
+        filterPanel.add(subjectFilter);
+        filterPanel.add(new JLabel("%:"));
+        filterPanel.add(minFilter);
+        filterPanel.add(new JLabel("-"));
+        filterPanel.add(maxFilter);
+        filterPanel.add(failingFilter);
+        filterPanel.add(searchButton);
+        filterPanel.add(clearButton);
+
+        ActionListener search = e -> {
+            try {
+                String namePrefix = emptyToNull(nameFilter.getText());
+                String dept = emptyToNull(deptFilter.getText());
+                String subject = emptyToNull(subjectFilter.getText());
+                String min = emptyToNull(minFilter.getText());
+                String max = emptyToNull(maxFilter.getText());
+                Double minPercentage = min == null ? null : Double.valueOf(min);
+                Double maxPercentage = max == null ? null : Double.valueOf(max);
+                boolean failingOnly = failingFilter.isSelected();
+
+                activeFilter = () -> {
+                    STUDENT_TABLE_TIMER.time(() -> studentTableModel.setFilter(index.search(namePrefix, dept,
+                            subject, minPercentage, maxPercentage, failingOnly)));
+                    GRADES_TABLE_TIMER.time(() -> gradesTableModel.setFilter(subject, minPercentage, maxPercentage));
+                };
+                activeFilter.run();
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Please enter valid numbers!");
+            }
+        };
+        nameFilter.addActionListener(search);
+        deptFilter.addActionListener(search);
+        subjectFilter.addActionListener(search);
+        minFilter.addActionListener(search);
+        maxFilter.addActionListener(search);
+        searchButton.addActionListener(search);
+        clearButton.addActionListener(e -> {
+            nameFilter.setText("");
+            deptFilter.setText("");
+            subjectFilter.setText("");
+            minFilter.setText("");
+            maxFilter.setText("");
+            failingFilter.setSelected(false);
+            clearFilter();
+        });
+
         JPanel formPanel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(5, 5, 5, 5);
@@ -191,6 +205,10 @@ public class StudentGradeManagementSystem extends JFrame {
             String name = nameField.getText().trim();
             String dept = deptField.getText().trim();
 
+            if (!checkLoaded()) {
+                return;
+            }
+
             if (rollNo.isEmpty() || name.isEmpty() || dept.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "All fields are required!");
                 return;
@@ -201,16 +219,27 @@ public class StudentGradeManagementSystem extends JFrame {
                 return;
             }
 
+            // The roll number may be taken in a department that is not open.
+            if (saver.isPartial()) {
+                JOptionPane.showMessageDialog(this,
+                        "Only some departments are open; open every department to add students.");
+                return;
+            }
+
             Student student = new Student(rollNo, name, dept);
             students.put(rollNo, student);
-            updateStudentTable();
-            updateStudentSelector();
+            journalStudent(student);
+            index.studentAdded(students.indexOf(rollNo), student);
+            studentTableModel.studentAdded();
+            refreshFilter();
+            rollNumbers.add(rollNo);
 
             rollNoField.setText("");
             nameField.setText("");
             deptField.setText("");
         });
 
+        panel.add(filterPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(formPanel, BorderLayout.SOUTH);
 
@@ -222,7 +251,7 @@ public class StudentGradeManagementSystem extends JFrame {
 
         JPanel selectionPanel = new JPanel(new FlowLayout());
 
-        studentSelector = new JComboBox<>();
+        studentSelector = rollNumberSelector();
         semesterSelector = new JComboBox<>(new Integer[] { 1, 2, 3, 4, 5, 6, 7, 8 });
 
         selectionPanel.add(new JLabel("Student:"));
@@ -230,8 +259,7 @@ public class StudentGradeManagementSystem extends JFrame {
         selectionPanel.add(new JLabel("Semester:"));
         selectionPanel.add(semesterSelector);
 
-        String[] columns = { "Subject", "Marks", "Max Marks", "Passing %", "Percentage", "Grade", "Status" };
-        gradesTableModel = new DefaultTableModel(columns, 0);
+        gradesTableModel = new GradesTableModel();
         gradesTable = new JTable(gradesTableModel);
         JScrollPane scrollPane = new JScrollPane(gradesTable);
 
@@ -277,6 +305,10 @@ public class StudentGradeManagementSystem extends JFrame {
             String selectedRollNo = (String) studentSelector.getSelectedItem();
             int selectedSemester = (Integer) semesterSelector.getSelectedItem();
 
+            if (!checkLoaded()) {
+                return;
+            }
+
             if (selectedRollNo == null) {
                 JOptionPane.showMessageDialog(this, "Please select a student!");
                 return;
@@ -295,12 +327,14 @@ public class StudentGradeManagementSystem extends JFrame {
                 Subject newSubject = new Subject(subject, marks, maxMarks, passing);
                 Student student = students.get(selectedRollNo);
 
-                List<Subject> semesterSubjects = student.getSemesterSubjects()
-                        .getOrDefault(selectedSemester, new ArrayList<>());
-                semesterSubjects.add(newSubject);
-                student.addSemesterSubjects(selectedSemester, semesterSubjects);
+                int position = student.addSubject(selectedSemester, newSubject);
+                journalSubject(selectedRollNo, selectedSemester, position, newSubject);
+                statistics.record(student.getDepartment(), selectedSemester, newSubject);
+                index.subjectAdded(students.indexOf(selectedRollNo), newSubject);
+                ranking.update(student);
+                refreshFilter();
 
-                updateGradesTable(selectedRollNo, selectedSemester);
+                gradesTableModel.subjectAdded(student.getSemesterSubjects().get(selectedSemester));
 
                 subjectField.setText("");
                 marksField.setText("");
@@ -337,62 +371,77 @@ public class StudentGradeManagementSystem extends JFrame {
         return panel;
     }
 
+    // The report is a list of lines rendered as they scroll into view, so that a
+    // department or the whole store can be read without building its text.
     private JPanel createReportPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        JTextArea reportArea = new JTextArea();
-        reportArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(reportArea);
+        JList<String> reportList = new JList<>(ReportLineModel.empty());
+        reportList.setFont(UIManager.getFont("TextArea.font"));
+        reportList.setPrototypeCellValue(REPORT_LINE_PROTOTYPE);
+        JScrollPane scrollPane = new JScrollPane(reportList);
 
         JPanel controlPanel = new JPanel(new FlowLayout());
-        reportStudentSelector = new JComboBox<>(); // Initialize here
+        reportStudentSelector = rollNumberSelector(); // Initialize here
+        JComboBox<String> scopeSelector = new JComboBox<>();
+        refreshReportScopes(scopeSelector);
+        scopeSelector.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                refreshReportScopes(scopeSelector);
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
         JButton generateButton = new JButton("Generate Report");
+        JLabel rankLabel = new JLabel();
 
         controlPanel.add(new JLabel("Student:"));
         controlPanel.add(reportStudentSelector);
+        controlPanel.add(new JLabel("Show:"));
+        controlPanel.add(scopeSelector);
         controlPanel.add(generateButton);
+        controlPanel.add(rankLabel);
 
         generateButton.addActionListener(e -> {
             String selectedRollNo = (String) reportStudentSelector.getSelectedItem();
-            if (selectedRollNo != null) {
-                Student student = students.get(selectedRollNo);
-                StringBuilder report = new StringBuilder();
-
-                report.append("Student Report\n");
-                report.append("=============\n\n");
-                report.append(String.format("Roll No: %s\n", student.getRollNo()));
-                report.append(String.format("Name: %s\n", student.getName()));
-                report.append(String.format("Department: %s\n\n", student.getDepartment()));
-
-                Map<Integer, List<Subject>> semesterSubjects = student.getSemesterSubjects();
-                for (Map.Entry<Integer, List<Subject>> entry : semesterSubjects.entrySet()) {
-                    report.append(String.format("Semester %d\n", entry.getKey()));
-                    report.append("----------\n");
-
-                    List<Subject> subjects = entry.getValue();
-                    double semesterTotal = 0;
-                    double semesterMaxTotal = 0;
-
-                    for (Subject subject : subjects) {
-                        report.append(String.format("%-20s: %6.2f/%-6.2f (%6.2f%%) - %s - %s\n",
-                                subject.getName(),
-                                subject.getMarks(),
-                                subject.getMaxMarks(),
-                                subject.getPercentage(),
-                                subject.getGrade(),
-                                subject.getStatus()));
-
-                        semesterTotal += subject.getMarks();
-                        semesterMaxTotal += subject.getMaxMarks();
-                    }
-
-                    double semesterPercentage = (semesterTotal / semesterMaxTotal) * 100;
-                    report.append(String.format("\nSemester Total: %.2f/%.2f (%.2f%%)\n\n",
-                            semesterTotal, semesterMaxTotal, semesterPercentage));
+            String scope = (String) scopeSelector.getSelectedItem();
+            if (REPORT_SCOPE_STUDENT.equals(scope)) {
+                int position = selectedRollNo == null ? -1 : students.indexOf(selectedRollNo);
+                if (position >= 0) {
+                    reportList.setModel(REPORT_TIMER.time(() -> ReportLineModel.forStudent(
+                            students.copyAt(position), reportCache)));
+                    String department = students.departmentAt(position);
+                    int rank = ranking.rank(selectedRollNo);
+                    rankLabel.setText(rank == 0 ? "Not ranked" : String.format("Rank %d of %d in %s",
+                            rank, ranking.size(department), department));
                 }
-
-                reportArea.setText(report.toString());
+                return;
             }
+            String department = REPORT_SCOPE_ALL.equals(scope) ? null : scope;
+            StudentStore current = students;
+            ReportLineModel[] built = new ReportLineModel[1];
+            // The snapshot copies every loaded student, so it is taken here too.
+            runInBackground("Preparing report...", 0, progress -> {
+                built[0] = REPORT_TIMER.time(() -> ReportLineModel.build(current.snapshot(), reportCache,
+                        department));
+            }, () -> {
+                reportList.setModel(built[0]);
+                rankLabel.setText(String.format("%d students", built[0].studentCount()));
+                // Open at the selected student when it is in the view.
+                int line = selectedRollNo == null ? -1 : built[0].firstLineOf(selectedRollNo);
+                if (line >= 0) {
+                    Rectangle top = reportList.getCellBounds(line, line);
+                    top.height = scrollPane.getViewport().getHeight();
+                    reportList.scrollRectToVisible(top);
+                }
+            }, "Error preparing report: ", "Report Error", null);
         });
 
         panel.add(controlPanel, BorderLayout.NORTH);
@@ -401,85 +450,453 @@ public class StudentGradeManagementSystem extends JFrame {
         return panel;
     }
 
-    private void updateStudentTable() {
-        studentTableModel.setRowCount(0);
-        for (Student student : students.values()) {
-            studentTableModel.addRow(new Object[] {
-                    student.getRollNo(),
-                    student.getName(),
-                    student.getDepartment()
-            });
+    // Grouped statistics over every subject row, computed from a snapshot in the
+    // background.
+    private JPanel createAnalyticsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        AnalyticsTableModel analyticsModel = new AnalyticsTableModel();
+        JTable analyticsTable = new JTable(analyticsModel);
+        analyticsTable.setAutoCreateRowSorter(true);
+        JScrollPane scrollPane = new JScrollPane(analyticsTable);
+
+        JPanel controlPanel = new JPanel(new FlowLayout());
+        JComboBox<CohortAnalytics.Grouping> groupingSelector = new JComboBox<>(CohortAnalytics.Grouping.values());
+        JButton runButton = new JButton("Analyze");
+        JLabel summaryLabel = new JLabel();
+
+        controlPanel.add(new JLabel("Group by:"));
+        controlPanel.add(groupingSelector);
+        controlPanel.add(runButton);
+        controlPanel.add(summaryLabel);
+
+        runButton.addActionListener(e -> {
+            CohortAnalytics.Grouping grouping = (CohortAnalytics.Grouping) groupingSelector.getSelectedItem();
+            StudentStore snapshot = students.snapshot();
+            List<SortedMap<CohortAnalytics.Group, CohortAnalytics.Summary>> result = new ArrayList<>(1);
+            long[] nanos = new long[1];
+            runInBackground("Analyzing...", 0, progress -> {
+                long start = System.nanoTime();
+                result.add(ANALYTICS_TIMER.time(() -> CohortAnalytics.analyze(snapshot, grouping)));
+                nanos[0] = System.nanoTime() - start;
+            }, () -> {
+                analyticsModel.setResult(result.get(0));
+                summaryLabel.setText(String.format("%d groups from %d students in %.0f ms",
+                        result.get(0).size(), snapshot.size(), nanos[0] / 1e6));
+            }, "Error analyzing grades: ", "Analytics Error", null);
+        });
+
+        panel.add(controlPanel, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        return panel;
+    }
+
+    // The selected student, every student, then one entry per department.
+    private void refreshReportScopes(JComboBox<String> scopeSelector) {
+        Object selected = scopeSelector.getSelectedItem();
+        DefaultComboBoxModel<String> scopes = new DefaultComboBoxModel<>();
+        scopes.addElement(REPORT_SCOPE_STUDENT);
+        scopes.addElement(REPORT_SCOPE_ALL);
+        for (String department : index.departments()) {
+            scopes.addElement(department);
+        }
+        if (selected != null && scopes.getIndexOf(selected) >= 0) {
+            scopes.setSelectedItem(selected);
         }
+        scopeSelector.setModel(scopes);
     }
 
-    private void updateStudentSelector() {
-        studentSelector.removeAllItems();
-        for (String rollNo : students.keySet()) {
-            studentSelector.addItem(rollNo);
+    // A combo box over the shared roll-number list. The prototype spares it from
+    // measuring every roll number to size itself and its popup.
+    private JComboBox<String> rollNumberSelector() {
+        RollNumberComboBoxModel model = new RollNumberComboBoxModel(rollNumbers);
+        rollNumberModels.add(model);
+        JComboBox<String> selector = new JComboBox<>(model);
+        selector.setPrototypeDisplayValue("XXXXXXXXXXXX");
+        selector.setKeySelectionManager(model.keySelection());
+        return selector;
+    }
+
+    private void setRollNumbers(RollNumberList list) {
+        rollNumbers = list;
+        for (RollNumberComboBoxModel model : rollNumberModels) {
+            model.setList(list);
         }
     }
 
     private void updateGradesTable(String rollNo, int semester) {
-        gradesTableModel.setRowCount(0);
-        Student student = students.get(rollNo);
-        if (student != null) {
-            List<Subject> subjects = student.getSemesterSubjects()
-                    .getOrDefault(semester, new ArrayList<>());
-
-            for (Subject subject : subjects) {
-                gradesTableModel.addRow(new Object[] {
-                        subject.getName(),
-                        subject.getMarks(),
-                        subject.getMaxMarks(),
-                        subject.getPercentage(),
-                        String.format("%.2f%%", subject.getPercentage()),
-                        subject.getGrade(),
-                        subject.getStatus()
-                });
+        GRADES_TABLE_TIMER.time(() -> {
+            Student student = students.get(rollNo);
+            gradesTableModel.setSubjects(student == null ? Collections.emptyList()
+                    : student.getSemesterSubjects().getOrDefault(semester, Collections.emptyList()));
+        });
+    }
+
+    private void saveData() {
+        saveData(true, null);
+    }
+
+    // Saves a snapshot of the current students on the persistence thread, usually
+    // just the students changed since the last save; edits made while it is
+    // written stay in the journal. `after` runs on the EDT once
+    // the save has finished, failed or been cancelled.
+    private void saveData(boolean confirm, Runnable after) {
+        if (loading) {
+            if (after != null) {
+                after.run();
+            }
+            return;
+        }
+        // Marked before the snapshot is taken: every edit journaled before the
+        // mark was made before it, so is in the snapshot.
+        GradeJournal snapshotJournal = journal;
+        long mark;
+        try {
+            mark = snapshotJournal != null ? snapshotJournal.mark() : 0;
+        } catch (IOException e) {
+            showJournalError(e);
+            mark = 0;
+        }
+        long journalMark = mark;
+        StudentSaver.Save save;
+        try {
+            save = SAVE_PREPARE_TIMER.time(() -> saver.prepare(students));
+        } catch (IOException e) {
+            // Counted as a failed save, so the autosaver tries again after its
+            // delay; it says so once rather than on every retry.
+            if (confirm || !prepareFailed) {
+                JOptionPane.showMessageDialog(this,
+                        "Error saving data: " + e.getMessage(),
+                        "Save Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+            prepareFailed = true;
+            autoSaver.saveFailed();
+            if (after != null) {
+                after.run();
             }
+            return;
         }
+        prepareFailed = false;
+
+        int edits = autoSaver.saveStarted();
+        boolean[] saved = new boolean[1];
+        pendingSaves++;
+        (save.isFull() ? FULL_SAVES : DIFFERENTIAL_SAVES).increment();
+        runInBackground(confirm ? "Saving data..." : null, save::size, progress -> {
+            SAVE_WRITE_TIMER.time(() -> saver.write(save, items -> withProgress(items, progress)));
+            if (snapshotJournal != null) {
+                snapshotJournal.truncateBefore(journalMark);
+            }
+        }, () -> {
+            saved[0] = true;
+            if (confirm) {
+                JOptionPane.showMessageDialog(this,
+                        "Data saved successfully!",
+                        "Save Success",
+                        JOptionPane.INFORMATION_MESSAGE);
+            }
+        }, "Error saving data: ", "Save Error", () -> {
+            pendingSaves--;
+            autoSaver.saveFinished(edits, saved[0]);
+            if (after != null) {
+                after.run();
+            }
+        });
     }
 
-    private void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream("student_data.ser"))) {
-            oos.writeObject(students);
-            JOptionPane.showMessageDialog(this,
-                    "Data saved successfully!",
-                    "Save Success",
-                    JOptionPane.INFORMATION_MESSAGE);
+    // -Dstudents.departments=CSE,ECE opens only those departments of a store split
+    // by department, unless the journal holds edits a previous session did not
+    // save, which may belong to any department.
+    private static Set<String> departmentsToOpen() {
+        String list = System.getProperty("students.departments");
+        if (list == null) {
+            return null;
+        }
+        try {
+            if (Files.size(JOURNAL_FILE) > 0) {
+                return null;
+            }
         } catch (IOException e) {
-            JOptionPane.showMessageDialog(this,
-                    "Error saving data: " + e.getMessage(),
-                    "Save Error",
-                    JOptionPane.ERROR_MESSAGE);
+            // No journal, so nothing to replay.
+        }
+        Set<String> departments = new TreeSet<>();
+        for (String department : list.split(",")) {
+            departments.add(department.trim());
         }
+        return departments;
     }
 
-    @SuppressWarnings("unchecked")
     private void loadData() {
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream("student_data.ser"))) {
-            students = (Map<String, Student>) ois.readObject();
-            updateStudentTable();
-            updateStudentSelector();
-            updateReportStudentSelector(); // Add this line to update the report student selector
-        } catch (FileNotFoundException e) {
-        } catch (IOException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                    "Error loading data: " + e.getMessage(),
-                    "Load Error",
-                    JOptionPane.ERROR_MESSAGE);
+        loading = true;
+        SwingWorker<StudentStore, Void> worker = new SwingWorker<StudentStore, Void>() {
+            private GradeJournal loadedJournal;
+            private GradeStatistics loadedStatistics;
+            private StudentIndex loadedIndex;
+            private DepartmentRanking loadedRanking;
+            private RollNumberList loadedRollNumbers;
+            private final List<String> errors = new ArrayList<>();
+
+            @Override
+            protected StudentStore doInBackground() {
+                return LOAD_TIMER.time(this::load);
+            }
+
+            private StudentStore load() {
+                try {
+                    GradeStore.SHARED.setGradingSchemes(GradingSchemes.load());
+                } catch (IOException e) {
+                    errors.add("Error loading grading schemes: " + e.getMessage());
+                }
+                StudentStore loaded = new StudentStore();
+                try {
+                    if (StudentSaver.exists(DATA_FILE)) {
+                        loaded = saver.load();
+                    } else if (Files.exists(LEGACY_DATA_FILE)) {
+                        // Converted to DATA_FILE, which is then opened as usual; the
+                        // .ser file is left as is.
+                        StudentDataFile.convertLegacy(LEGACY_DATA_FILE, DATA_FILE);
+                        loaded = saver.load();
+                    }
+                } catch (IOException e) {
+                    errors.add("Error loading data: " + e.getMessage());
+                }
+
+                try {
+                    loadedJournal = GradeJournal.open(JOURNAL_FILE, loaded);
+                } catch (IOException e) {
+                    errors.add("Error replaying journal: " + e.getMessage());
+                }
+                // Independent read-only passes over the store, one per core.
+                StudentStore store = loaded;
+                CompletableFuture<GradeStatistics> statisticsBuild =
+                        CompletableFuture.supplyAsync(() -> GradeStatistics.build(store));
+                CompletableFuture<StudentIndex> indexBuild =
+                        CompletableFuture.supplyAsync(() -> StudentIndex.build(store));
+                CompletableFuture<DepartmentRanking> rankingBuild =
+                        CompletableFuture.supplyAsync(() -> DepartmentRanking.build(store));
+                loadedRollNumbers = RollNumberList.build(store);
+                loadedStatistics = statisticsBuild.join();
+                loadedIndex = indexBuild.join();
+                loadedRanking = rankingBuild.join();
+                return store;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    students = get();
+                    index = loadedIndex;
+                    ranking = loadedRanking;
+                    reportCache.clear();
+                    STUDENT_TABLE_TIMER.time(() -> studentTableModel.setStudents(students));
+                } catch (InterruptedException | ExecutionException e) {
+                    errors.add("Error loading data: " + e.getMessage());
+                }
+                journal = loadedJournal;
+                if (loadedStatistics != null) {
+                    statistics = loadedStatistics;
+                }
+                loading = false;
+                if (loadedRollNumbers != null) {
+                    setRollNumbers(loadedRollNumbers);
+                }
+                if (saver.isPartial()) {
+                    setTitle("Student Grade Management System - " + String.join(", ", saver.openDepartments()));
+                }
+                for (String error : errors) {
+                    JOptionPane.showMessageDialog(StudentGradeManagementSystem.this,
+                            error,
+                            "Load Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        persistence.execute(worker);
+    }
+
+    private void refreshFilter() {
+        if (activeFilter != null) {
+            activeFilter.run();
         }
     }
 
-    private void updateReportStudentSelector() {
-        reportStudentSelector.removeAllItems(); // Clear existing items
-        for (String rollNo : students.keySet()) {
-            reportStudentSelector.addItem(rollNo);
+    private void clearFilter() {
+        activeFilter = null;
+        studentTableModel.setFilter(null);
+        gradesTableModel.setFilter(null, null, null);
+    }
+
+    private static String emptyToNull(String text) {
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private boolean checkLoaded() {
+        if (loading) {
+            JOptionPane.showMessageDialog(this, "Data is still loading, please wait.");
+            return false;
+        }
+        return true;
+    }
+
+    private void journalStudent(Student student) {
+        EDITS.increment();
+        autoSaver.editMade();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.studentAdded(student);
+            compactJournalIfNeeded();
+        } catch (IOException e) {
+            showJournalError(e);
+        }
+    }
+
+    private void journalSubject(String rollNo, int semester, int position, Subject subject) {
+        EDITS.increment();
+        autoSaver.editMade();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.subjectAdded(rollNo, semester, position, subject);
+            compactJournalIfNeeded();
+        } catch (IOException e) {
+            showJournalError(e);
+        }
+    }
+
+    private void compactJournalIfNeeded() {
+        if (pendingSaves == 0 && journal.needsCompaction()) {
+            saveData(false, null);
+        }
+    }
+
+    // Saves, then exits once the save has completed.
+    private void exitApplication() {
+        saveData(true, () -> {
+            autoSaver.close();
+            if (server != null) {
+                server.stop();
+            }
+            closeJournal();
+            try {
+                saver.close();
+            } catch (IOException e) {
+                // Every save has completed by now; nothing is lost.
+            }
+            dispose();
+            System.exit(0);
+        });
+    }
+
+    // Runs work on the persistence thread behind a ProgressMonitor (none if title is
+    // null). The work reports how many of `total` items are done and is stopped
+    // with a CancellationException when the user cancels.
+    private void runInBackground(String title, int total, BackgroundTask task, Runnable onSuccess,
+            String errorPrefix, String errorTitle, Runnable after) {
+        runInBackground(title, () -> total, task, onSuccess, errorPrefix, errorTitle, after);
+    }
+
+    // A total that takes work to count is counted on the persistence thread first.
+    private void runInBackground(String title, IntSupplier count, BackgroundTask task, Runnable onSuccess,
+            String errorPrefix, String errorTitle, Runnable after) {
+        ProgressMonitor monitor = title == null ? null : new ProgressMonitor(this, title, null, 0, 100);
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                int total = count.getAsInt();
+                task.run(done -> {
+                    if (isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    setProgress(total == 0 ? 100 : (int) Math.min(100, done * 100L / total));
+                });
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                if (monitor != null) {
+                    monitor.close();
+                }
+                try {
+                    get();
+                    onSuccess.run();
+                } catch (CancellationException e) {
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(StudentGradeManagementSystem.this,
+                            errorPrefix + e.getCause().getMessage(),
+                            errorTitle,
+                            JOptionPane.ERROR_MESSAGE);
+                } finally {
+                    if (after != null) {
+                        after.run();
+                    }
+                }
+            }
+        };
+        if (monitor != null) {
+            worker.addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    monitor.setProgress((Integer) e.getNewValue());
+                    if (monitor.isCanceled()) {
+                        worker.cancel(false);
+                    }
+                }
+            });
+        }
+        persistence.execute(worker);
+    }
+
+    private interface BackgroundTask {
+        void run(IntConsumer progress) throws IOException;
+    }
+
+    // Reports progress every 1024 elements of the iteration.
+    private static <T> Iterable<T> withProgress(Iterable<T> items, IntConsumer progress) {
+        return () -> new Iterator<T>() {
+            private final Iterator<T> delegate = items.iterator();
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if ((++count & 1023) == 0) {
+                    progress.accept(count);
+                }
+                return delegate.next();
+            }
+        };
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                showJournalError(e);
+            }
+            journal = null;
         }
     }
 
+    private void showJournalError(IOException e) {
+        JOptionPane.showMessageDialog(this,
+                "Error writing journal: " + e.getMessage(),
+                "Journal Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+
     private boolean isValidNumber(String input) {
         try {
             double value = Double.parseDouble(input);
@@ -494,27 +911,40 @@ public class StudentGradeManagementSystem extends JFrame {
 
         JMenu fileMenu = new JMenu("File");
         JMenuItem saveItem = new JMenuItem("Save");
+        JMenuItem splitItem = new JMenuItem("Split Data by Department");
         JMenuItem exitItem = new JMenuItem("Exit");
 
         saveItem.addActionListener(e -> saveData());
-        exitItem.addActionListener(e -> {
-            saveData();
-            System.exit(0);
-        });
+        splitItem.addActionListener(e -> splitData());
+        exitItem.addActionListener(e -> exitApplication());
 
         fileMenu.add(saveItem);
+        fileMenu.add(splitItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
 
         JMenu toolsMenu = new JMenu("Tools");
         JMenuItem exportItem = new JMenuItem("Export Reports");
         JMenuItem statisticsItem = new JMenuItem("Show Statistics");
+        JMenuItem rankingItem = new JMenuItem("Department Rankings");
+        JMenuItem gradingItem = new JMenuItem("Reload Grading Schemes");
+        JMenuItem autosaveItem = new JMenuItem("Autosave Status");
+        JMenuItem diagnosticsItem = new JMenuItem("Diagnostics");
 
         exportItem.addActionListener(e -> exportReports());
         statisticsItem.addActionListener(e -> showStatistics());
+        rankingItem.addActionListener(e -> showRankings());
+        gradingItem.addActionListener(e -> reloadGradingSchemes());
+        autosaveItem.addActionListener(e -> showAutosaveStatus());
+        diagnosticsItem.addActionListener(e -> showDiagnostics());
 
         toolsMenu.add(exportItem);
         toolsMenu.add(statisticsItem);
+        toolsMenu.add(rankingItem);
+        toolsMenu.addSeparator();
+        toolsMenu.add(gradingItem);
+        toolsMenu.add(autosaveItem);
+        toolsMenu.add(diagnosticsItem);
 
         JMenu helpMenu = new JMenu("Help");
         JMenuItem aboutItem = new JMenuItem("About");
@@ -530,58 +960,87 @@ public class StudentGradeManagementSystem extends JFrame {
         setJMenuBar(menuBar);
     }
 
+    // Rewrites the data file as one shard per department on the next save, so
+    // that departments can be opened on their own (-Dstudents.departments).
+    private void splitData() {
+        if (!checkLoaded()) {
+            return;
+        }
+        if (saver.isSharded()) {
+            JOptionPane.showMessageDialog(this,
+                    "The data is already split by department.",
+                    "Split Data",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        int choice = JOptionPane.showConfirmDialog(this,
+                "Save every department to a file of its own and remove " + DATA_FILE + "?",
+                "Split Data",
+                JOptionPane.OK_CANCEL_OPTION);
+        if (choice == JOptionPane.OK_OPTION) {
+            saver.splitByDepartment();
+            saveData();
+        }
+    }
+
+    // Re-reads grading.properties and re-grades every subject in place, then
+    // rebuilds the statistics and rankings from the new grades. Edits wait until
+    // it is done, as they would during a load.
+    private void reloadGradingSchemes() {
+        if (!checkLoaded()) {
+            return;
+        }
+        loading = true;
+        StudentStore current = students;
+        GradeStatistics[] rebuiltStatistics = new GradeStatistics[1];
+        DepartmentRanking[] rebuiltRanking = new DepartmentRanking[1];
+        runInBackground("Re-grading...", 0, progress -> {
+            GradeStore.SHARED.setGradingSchemes(GradingSchemes.load());
+            rebuiltStatistics[0] = GradeStatistics.build(current);
+            rebuiltRanking[0] = DepartmentRanking.build(current);
+        }, () -> {
+            statistics = rebuiltStatistics[0];
+            ranking = rebuiltRanking[0];
+            gradesTableModel.fireTableDataChanged();
+            JOptionPane.showMessageDialog(this,
+                    Files.exists(GradingSchemes.FILE) ? "Grades recomputed with " + GradingSchemes.FILE + "."
+                            : "No " + GradingSchemes.FILE + " found; grades recomputed with the standard scheme.",
+                    "Grading Schemes",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }, "Error re-grading: ", "Grading Error", () -> loading = false);
+    }
+
     private void exportReports() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Export Reports");
 
+        JCheckBox byDepartmentBox = new JCheckBox("One file per department");
+        JCheckBox gzipBox = new JCheckBox("Compress (gzip)");
+        JPanel options = new JPanel(new GridLayout(0, 1));
+        options.add(byDepartmentBox);
+        options.add(gzipBox);
+        fileChooser.setAccessory(options);
+
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
-            try (PrintWriter writer = new PrintWriter(file)) {
-                writer.println("Student Grade Management System - Complete Report");
-                writer.println("==============================================\n");
-
-                for (Student student : students.values()) {
-                    writer.println("Student Information:");
-                    writer.printf("Roll No: %s%n", student.getRollNo());
-                    writer.printf("Name: %s%n", student.getName());
-                    writer.printf("Department: %s%n%n", student.getDepartment());
-
-                    for (Map.Entry<Integer, List<Subject>> entry : student.getSemesterSubjects().entrySet()) {
-                        writer.printf("Semester %d:%n", entry.getKey());
-                        writer.println("-----------");
-
-                        for (Subject subject : entry.getValue()) {
-                            writer.printf("%-20s: %6.2f/%-6.2f (%6.2f%%) - %s - %s%n",
-                                    subject.getName(),
-                                    subject.getMarks(),
-                                    subject.getMaxMarks(),
-                                    subject.getPercentage(),
-                                    subject.getGrade(),
-                                    subject.getStatus());
-                        }
-                        writer.println();
-                    }
-                    writer.println("==============================================\n");
-                }
-
-                JOptionPane.showMessageDialog(this,
-                        "Reports exported successfully!",
-                        "Export Success",
-                        JOptionPane.INFORMATION_MESSAGE);
-
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this,
-                        "Error exporting reports: " + e.getMessage(),
-                        "Export Error",
-                        JOptionPane.ERROR_MESSAGE);
-            }
+            StudentStore snapshot = students.snapshot();
+            ReportExporter exporter = new ReportExporter(file.toPath(),
+                    byDepartmentBox.isSelected(), gzipBox.isSelected(), reportCache);
+            runInBackground("Exporting reports...", snapshot.size(), progress -> {
+                EXPORT_TIMER.time(() -> exporter.export(snapshot.scan(), progress));
+            },
+                    () -> JOptionPane.showMessageDialog(this,
+                            "Reports exported successfully!",
+                            "Export Success",
+                            JOptionPane.INFORMATION_MESSAGE),
+                    "Error exporting reports: ", "Export Error", null);
         }
     }
 
     private void showStatistics() {
         JDialog dialog = new JDialog(this, "Statistics", true);
         dialog.setLayout(new BorderLayout());
-        dialog.setSize(400, 300);
+        dialog.setSize(500, 450);
         dialog.setLocationRelativeTo(this);
 
         JTextArea statsArea = new JTextArea();
@@ -594,28 +1053,28 @@ public class StudentGradeManagementSystem extends JFrame {
 
         stats.append(String.format("Total Students: %d%n", students.size()));
 
-        int totalSubjects = 0;
-        int totalPasses = 0;
-        double totalPercentage = 0;
+        GradeStatistics.Aggregate total = statistics.getTotal();
+        if (total.getCount() > 0) {
+            stats.append(String.format("Total Subjects: %d%n", total.getCount()));
+            stats.append(String.format("Pass Rate: %.2f%%%n", total.getPassRate()));
+            stats.append(String.format("Average Percentage: %.2f%%%n", total.getAveragePercentage()));
 
-        for (Student student : students.values()) {
-            for (List<Subject> subjects : student.getSemesterSubjects().values()) {
-                totalSubjects += subjects.size();
-                for (Subject subject : subjects) {
-                    if (subject.getStatus().equals("PASS")) {
-                        totalPasses++;
-                    }
-                    totalPercentage += subject.getPercentage();
-                }
+            stats.append(String.format("%nGrade Distribution%n"));
+            for (int grade = 0; grade < GradeStore.GRADES.length; grade++) {
+                stats.append(String.format("  %-3s %8d%n", GradeStore.GRADES[grade], total.getGradeCount(grade)));
             }
-        }
 
-        if (totalSubjects > 0) {
-            stats.append(String.format("Total Subjects: %d%n", totalSubjects));
-            stats.append(String.format("Pass Rate: %.2f%%%n",
-                    (totalPasses * 100.0) / totalSubjects));
-            stats.append(String.format("Average Percentage: %.2f%%%n",
-                    totalPercentage / totalSubjects));
+            stats.append(String.format("%nPercentiles: P25 %.1f%%  Median %.1f%%  P90 %.1f%%%n",
+                    total.percentile(25), total.percentile(50), total.percentile(90)));
+
+            stats.append(String.format("%nBy Department%n"));
+            for (Map.Entry<String, GradeStatistics.Aggregate> entry : statistics.getByDepartment().entrySet()) {
+                appendAggregate(stats, entry.getKey(), entry.getValue());
+            }
+            stats.append(String.format("%nBy Semester%n"));
+            for (Map.Entry<Integer, GradeStatistics.Aggregate> entry : statistics.getBySemester().entrySet()) {
+                appendAggregate(stats, "Semester " + entry.getKey(), entry.getValue());
+            }
         }
 
         statsArea.setText(stats.toString());
@@ -628,6 +1087,108 @@ public class StudentGradeManagementSystem extends JFrame {
         dialog.setVisible(true);
     }
 
+    private void showRankings() {
+        JDialog dialog = new JDialog(this, "Department Rankings", true);
+        dialog.setLayout(new BorderLayout());
+        dialog.setSize(500, 450);
+        dialog.setLocationRelativeTo(this);
+
+        JTextArea rankingArea = new JTextArea();
+        rankingArea.setEditable(false);
+        rankingArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JScrollPane scrollPane = new JScrollPane(rankingArea);
+
+        StringBuilder text = new StringBuilder();
+        text.append("Top 10 by CGPA\n");
+        text.append("==============\n");
+        for (String department : ranking.departments()) {
+            text.append(String.format("%n%s (%d ranked)%n", department, ranking.size(department)));
+            int rank = 1;
+            for (String rollNo : ranking.top(department, 10)) {
+                text.append(String.format("  %2d. %-12s %-24s %5.2f%n", rank++, rollNo,
+                        students.get(rollNo).getName(), ranking.cgpa(rollNo)));
+            }
+        }
+
+        rankingArea.setText(text.toString());
+        rankingArea.setCaretPosition(0);
+        dialog.add(scrollPane, BorderLayout.CENTER);
+
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dialog.dispose());
+        dialog.add(closeButton, BorderLayout.SOUTH);
+
+        dialog.setVisible(true);
+    }
+
+    private static void appendAggregate(StringBuilder stats, String label, GradeStatistics.Aggregate aggregate) {
+        stats.append(String.format("  %-12s %8d subjects, pass %6.2f%%, avg %6.2f%%%n",
+                label, aggregate.getCount(), aggregate.getPassRate(), aggregate.getAveragePercentage()));
+    }
+
+    private void showAutosaveStatus() {
+        StringBuilder status = new StringBuilder();
+        if (autoSaver.delayMillis() > 0) {
+            status.append(String.format("Saves within %d s of an edit, or after %d edits%n%n",
+                    autoSaver.delayMillis() / 1000, autoSaver.maxEdits()));
+        } else {
+            status.append(String.format("Autosave is off%n%n"));
+        }
+        status.append(String.format("Unsaved edits: %d%n", autoSaver.pendingEdits()));
+        if (autoSaver.lastSaveTime() > 0) {
+            status.append(String.format("Last save: %tT, took %d ms, wrote %,d bytes%n",
+                    autoSaver.lastSaveTime(), autoSaver.lastSaveMillis(), autoSaver.lastSaveBytes()));
+        } else {
+            status.append(String.format("Last save: none yet%n"));
+        }
+        status.append(String.format("Saves: %d (%d failed), %,d bytes written", autoSaver.saves(),
+                autoSaver.failures(), autoSaver.bytesWritten()));
+        JOptionPane.showMessageDialog(this,
+                status.toString(),
+                "Autosave Status",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private void showDiagnostics() {
+        JDialog dialog = new JDialog(this, "Diagnostics", true);
+        dialog.setLayout(new BorderLayout());
+        dialog.setSize(760, 450);
+        dialog.setLocationRelativeTo(this);
+
+        JTextArea metricsArea = new JTextArea(Metrics.dump());
+        metricsArea.setEditable(false);
+        metricsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        dialog.add(new JScrollPane(metricsArea), BorderLayout.CENTER);
+
+        JButton refreshButton = new JButton("Refresh");
+        JButton dumpButton = new JButton("Save to File...");
+        JButton closeButton = new JButton("Close");
+        refreshButton.addActionListener(e -> metricsArea.setText(Metrics.dump()));
+        dumpButton.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Save Diagnostics");
+            fileChooser.setSelectedFile(new File("metrics.txt"));
+            if (fileChooser.showSaveDialog(dialog) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    Metrics.dump(fileChooser.getSelectedFile().toPath());
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(dialog,
+                            "Error saving diagnostics: " + ex.getMessage(),
+                            "Diagnostics Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        closeButton.addActionListener(e -> dialog.dispose());
+        JPanel buttons = new JPanel(new FlowLayout());
+        buttons.add(refreshButton);
+        buttons.add(dumpButton);
+        buttons.add(closeButton);
+        dialog.add(buttons, BorderLayout.SOUTH);
+
+        dialog.setVisible(true);
+    }
+
     private void showAboutDialog() {
         JOptionPane.showMessageDialog(this,
                 "Student Grade Management System\nVersion 1.0\n\n" +
@@ -637,7 +1198,31 @@ public class StudentGradeManagementSystem extends JFrame {
                 JOptionPane.INFORMATION_MESSAGE);
     }
 
+    // Serves the API on the loopback interface alongside the window.
+    private void startServer(int port) {
+        try {
+            server = new GradeServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    () -> students, () -> statistics, reportCache);
+            server.start();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Error starting API server: " + e.getMessage(),
+                    "Server Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     public static void main(String[] args) {
+        // `--serve PORT` also serves the API; any other arguments mean a batch run,
+        // as does serving without a display. `java GradeBatch` does the same
+        // without loading Swing.
+        boolean serve = args.length == 2 && args[0].equals("--serve") && args[1].matches("\\d{1,5}");
+        if ((args.length > 0 && !serve) || (serve && GraphicsEnvironment.isHeadless())) {
+            GradeBatch.main(args);
+            return;
+        }
+        int port = serve ? Integer.parseInt(args[1]) : -1;
+
         try {
             UIManager.setLookAndFeel(
                     UIManager.getSystemLookAndFeelClassName());
@@ -648,6 +1233,9 @@ public class StudentGradeManagementSystem extends JFrame {
         SwingUtilities.invokeLater(() -> {
             StudentGradeManagementSystem system = new StudentGradeManagementSystem();
             system.setVisible(true);
+            if (port >= 0) {
+                system.startServer(port);
+            }
         });
     }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+import java.util.*;
+import java.util.List;
+
+// Secondary indexes over a StudentStore, keyed by store position: a name index
+// sorted for prefix search, hash indexes from department and subject to the
+// students that have them, the set of students failing any subject, and a range
+// index on each student's overall percentage in 1% buckets.
+class StudentIndex {
+    private static final int BUCKETS = 101;
+
+    private final StudentStore students;
+    private final int[] byName; // positions present at build time, by lower-cased name
+    private final NavigableMap<String, List<Integer>> addedNames = new TreeMap<>();
+    private final Map<String, BitSet> byDepartment = new HashMap<>();
+    private final SortedSet<String> departments = new TreeSet<>(); // as entered
+    private final Map<String, BitSet> bySubject = new HashMap<>();
+    private final BitSet failing = new BitSet();
+    private final BitSet[] byPercentage = new BitSet[BUCKETS];
+    private double[] marksTotal;
+    private double[] maxMarksTotal;
+
+    private StudentIndex(StudentStore students, int[] byName) {
+        this.students = students;
+        this.byName = byName;
+        this.marksTotal = new double[Math.max(16, students.size())];
+        this.maxMarksTotal = new double[marksTotal.length];
+        for (int i = 0; i < BUCKETS; i++) {
+            byPercentage[i] = new BitSet();
+        }
+    }
+
+    static StudentIndex build(StudentStore students) {
+        int size = students.size();
+        String[] names = new String[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = key(students.nameAt(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> names[i]));
+        int[] byName = new int[size];
+        for (int i = 0; i < size; i++) {
+            byName[i] = order[i];
+        }
+
+        StudentIndex index = new StudentIndex(students, byName);
+        for (int i = 0; i < size; i++) {
+            String department = students.departmentAt(i);
+            index.byDepartment.computeIfAbsent(key(department), k -> new BitSet()).set(i);
+            index.departments.add(department);
+        }
+        students.forEachRow((position, department, semester, subject, marks, maxMarks, passing) ->
+                index.addRow(position, subject, marks, maxMarks, passing));
+        for (int i = 0; i < size; i++) {
+            index.bucketFor(i, true);
+        }
+        return index;
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    void studentAdded(int position, Student student) {
+        ensureCapacity(position);
+        addedNames.computeIfAbsent(key(student.getName()), k -> new ArrayList<>()).add(position);
+        byDepartment.computeIfAbsent(key(student.getDepartment()), k -> new BitSet()).set(position);
+        departments.add(student.getDepartment());
+    }
+
+    // Every department with a student, graded or not.
+    SortedSet<String> departments() {
+        return Collections.unmodifiableSortedSet(departments);
+    }
+
+    void subjectAdded(int position, Subject subject) {
+        bucketFor(position, false);
+        addRow(position, subject.getName(), subject.getMarks(), subject.getMaxMarks(),
+                subject.getPassingPercentage());
+        bucketFor(position, true);
+    }
+
+    private void addRow(int position, String subject, double marks, double maxMarks, double passing) {
+        ensureCapacity(position);
+        bySubject.computeIfAbsent(key(subject), k -> new BitSet()).set(position);
+        if ((marks / maxMarks) * 100 < passing) {
+            failing.set(position);
+        }
+        marksTotal[position] += marks;
+        maxMarksTotal[position] += maxMarks;
+    }
+
+    private void ensureCapacity(int position) {
+        if (position >= marksTotal.length) {
+            int capacity = Math.max(position + 1, marksTotal.length * 2);
+            marksTotal = Arrays.copyOf(marksTotal, capacity);
+            maxMarksTotal = Arrays.copyOf(maxMarksTotal, capacity);
+        }
+    }
+
+    private double overallPercentage(int position) {
+        return (marksTotal[position] / maxMarksTotal[position]) * 100;
+    }
+
+    // Adds or removes the student from its percentage bucket; students without
+    // any marks (or with a zero maximum) are not in the range index.
+    private void bucketFor(int position, boolean add) {
+        double percentage = overallPercentage(position);
+        if (Double.isNaN(percentage) || Double.isInfinite(percentage)) {
+            return;
+        }
+        int bucket = (int) Math.max(0, Math.min(BUCKETS - 1, Math.floor(percentage)));
+        byPercentage[bucket].set(position, add);
+    }
+
+    // Positions of the students matching every given criterion, in store order;
+    // null criteria are ignored. With no criteria at all, returns null (everyone).
+    int[] search(String namePrefix, String department, String subject, Double minPercentage,
+            Double maxPercentage, boolean failingOnly) {
+        BitSet result = null;
+        if (namePrefix != null) {
+            result = and(result, names(key(namePrefix)));
+        }
+        if (department != null) {
+            result = and(result, byDepartment.getOrDefault(key(department), new BitSet()));
+        }
+        if (subject != null) {
+            result = and(result, bySubject.getOrDefault(key(subject), new BitSet()));
+        }
+        if (failingOnly) {
+            result = and(result, failing);
+        }
+        if (minPercentage != null || maxPercentage != null) {
+            double min = minPercentage == null ? Double.NEGATIVE_INFINITY : minPercentage;
+            double max = maxPercentage == null ? Double.POSITIVE_INFINITY : maxPercentage;
+            if (result == null) {
+                result = percentageRange(min, max);
+            } else {
+                // The other criteria have already narrowed it down; checking the
+                // candidates is cheaper than unioning the buckets.
+                for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+                    double percentage = overallPercentage(i);
+                    if (!(percentage >= min && percentage <= max)) {
+                        result.clear(i);
+                    }
+                }
+            }
+        }
+        return result == null ? null : result.stream().toArray();
+    }
+
+    private static BitSet and(BitSet result, BitSet other) {
+        if (result == null) {
+            return (BitSet) other.clone();
+        }
+        result.and(other);
+        return result;
+    }
+
+    private BitSet names(String prefix) {
+        BitSet matches = new BitSet();
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(students.nameAt(byName[mid])).compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < byName.length && key(students.nameAt(byName[i])).startsWith(prefix); i++) {
+            matches.set(byName[i]);
+        }
+        for (Map.Entry<String, List<Integer>> entry : addedNames.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            for (int position : entry.getValue()) {
+                matches.set(position);
+            }
+        }
+        return matches;
+    }
+
+    private BitSet percentageRange(double min, double max) {
+        BitSet matches = new BitSet();
+        if (min > max) {
+            return matches;
+        }
+        int first = (int) Math.max(0, Math.min(BUCKETS - 1, Math.floor(min)));
+        int last = (int) Math.max(0, Math.min(BUCKETS - 1, Math.floor(max)));
+        for (int bucket = first; bucket <= last; bucket++) {
+            if (bucket > first && bucket < last) {
+                matches.or(byPercentage[bucket]);
+                continue;
+            }
+            BitSet edge = byPercentage[bucket];
+            for (int i = edge.nextSetBit(0); i >= 0; i = edge.nextSetBit(i + 1)) {
+                double percentage = overallPercentage(i);
+                if (percentage >= min && percentage <= max) {
+                    matches.set(i);
+                }
+            }
+        }
+        return matches;
+    }
+}
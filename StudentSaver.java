@@ -0,0 +1,408 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+// Saves students to a StudentDataFile plus a StudentDeltaFile next to it. A save
+// normally appends just the students changed since the last one to the delta,
+// so it costs what changed; once the delta has grown to a quarter of the data
+// file (at least DELTA_MIN_COMPACT bytes) the next save rewrites the data file
+// and starts an empty delta instead.
+//
+// When a ShardManifest sits next to the data file, the store is sharded by
+// department instead: each shard is a data file and delta of its own, saved by
+// a StudentSaver of its own, and the shards are loaded and written in parallel.
+// Only some departments may be opened; their students can then be saved, but
+// nobody can be added to a department that was not opened.
+//
+// prepare() picks what to write and copies it, and must be called where no
+// edits run concurrently (the EDT); write() may then run on another thread.
+// Saves are written in the order they were prepared. prepare() and
+// bytesWritten() never wait for a write in progress: prepare() goes by what the
+// files held when the last write finished, so a save prepared meanwhile may
+// repeat some of what that write holds, which replays the same.
+class StudentSaver implements Closeable {
+    private static final long DELTA_MIN_COMPACT = 1 << 20;
+
+    // What one save writes: a snapshot of every student, or copies of the
+    // changed ones holding only their changed semesters. For a shard only its
+    // department's students are written; a sharded store's save is one per
+    // shard with something to write. A split is a snapshot, cut into shards
+    // when it is written.
+    static final class Save {
+        private final StudentStore students;
+        private final StudentStore snapshot;
+        private final List<Student> changed;
+        private final String department;
+        private final List<Save> shards;
+        private final ShardManifest manifest; // written after the shards, null if unchanged
+        private final int manifestVersion;
+        private final boolean split;
+
+        private Save(StudentStore students, StudentStore snapshot, List<Student> changed, String department) {
+            this.students = students;
+            this.snapshot = snapshot;
+            this.changed = changed;
+            this.department = department;
+            this.shards = null;
+            this.manifest = null;
+            this.manifestVersion = 0;
+            this.split = false;
+        }
+
+        private Save(List<Save> shards, ShardManifest manifest, int manifestVersion) {
+            this.students = null;
+            this.snapshot = null;
+            this.changed = null;
+            this.department = null;
+            this.shards = shards;
+            this.manifest = manifest;
+            this.manifestVersion = manifestVersion;
+            this.split = false;
+        }
+
+        private Save(StudentStore students, StudentStore snapshot) {
+            this.students = students;
+            this.snapshot = snapshot;
+            this.changed = null;
+            this.department = null;
+            this.shards = null;
+            this.manifest = null;
+            this.manifestVersion = 0;
+            this.split = true;
+        }
+
+        boolean isFull() {
+            if (shards != null) {
+                return shards.stream().anyMatch(Save::isFull);
+            }
+            return snapshot != null;
+        }
+
+        // Students to be written. Counting a shard saved in full can take a pass
+        // over the snapshot, so call this off the EDT.
+        int size() {
+            if (shards == null) {
+                return snapshot == null ? changed.size() : snapshot.size();
+            }
+            // The shards saved in full share one snapshot, counted once.
+            Map<String, Integer> counts = null;
+            int size = 0;
+            for (Save shard : shards) {
+                if (shard.snapshot == null) {
+                    size += shard.changed.size();
+                } else {
+                    if (counts == null) {
+                        counts = shard.snapshot.countDepartments();
+                    }
+                    size += counts.getOrDefault(shard.department, 0);
+                }
+            }
+            return size;
+        }
+    }
+
+    private final Path dataFile;
+    private final String department; // a shard's department, null otherwise
+    private final Set<String> departments; // the shards to open, null for all
+    // Held for the whole of a write, load or close. The saver's own lock guards
+    // the fields below it and is only held briefly.
+    private final Object writeLock = new Object();
+    private StudentDeltaFile delta; // under writeLock
+    // What prepare() goes by: the files as the last write left them.
+    private long baseSize;
+    private int deltaGeneration; // 0 without a delta
+    private long deltaSize;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private ShardManifest manifest; // null unless sharded
+    private final Map<String, StudentSaver> shards = new TreeMap<>();
+    private int manifestVersion; // bumped whenever a shard is added
+    private int manifestWritten; // the version last written
+    private boolean splitting;
+
+    StudentSaver(Path dataFile) {
+        this(dataFile, null, null);
+    }
+
+    // Opens only the given departments of a sharded store.
+    StudentSaver(Path dataFile, Set<String> departments) {
+        this(dataFile, null, departments);
+    }
+
+    private StudentSaver(Path dataFile, String department, Set<String> departments) {
+        this.dataFile = dataFile;
+        this.department = department;
+        this.departments = departments;
+    }
+
+    static boolean exists(Path dataFile) throws IOException {
+        return StudentDataFile.exists(dataFile) || ShardManifest.exists(dataFile);
+    }
+
+    // Opens the data file and applies the delta saved on top of it, if that
+    // delta belongs to this data file.
+    StudentStore load() throws IOException {
+        synchronized (writeLock) {
+            if (department == null && ShardManifest.exists(dataFile)) {
+                return loadShards();
+            }
+            StudentStore students = StudentStore.open(dataFile, department);
+            closeDelta();
+            delta = StudentDeltaFile.open(StudentDeltaFile.pathFor(dataFile), students.baseGeneration(), students);
+            written(Files.size(dataFile));
+            return students;
+        }
+    }
+
+    // Each shard is mapped and has its delta replayed on a pool thread.
+    private StudentStore loadShards() throws IOException {
+        ShardManifest read = ShardManifest.read(dataFile);
+        closeShards();
+        List<StudentSaver> opened;
+        synchronized (this) {
+            manifest = read;
+            manifestWritten = manifestVersion;
+            for (String shard : manifest.departments()) {
+                if (departments == null || departments.contains(shard)) {
+                    shards.put(shard, new StudentSaver(manifest.shard(shard), shard, null));
+                }
+            }
+            opened = new ArrayList<>(shards.values());
+        }
+        try {
+            List<StudentStore> stores = opened.parallelStream().map(shard -> {
+                try {
+                    return shard.load();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+            return StudentStore.union(stores);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    synchronized boolean isSharded() {
+        return manifest != null;
+    }
+
+    // Whether departments of a sharded store were left closed.
+    synchronized boolean isPartial() {
+        return manifest != null && !shards.keySet().containsAll(manifest.departments());
+    }
+
+    // The departments opened of a sharded store; empty if not sharded.
+    synchronized Set<String> openDepartments() {
+        return new TreeSet<>(shards.keySet());
+    }
+
+    // Makes the next save split the store into one shard per department, after
+    // which the single data file and its delta are removed.
+    synchronized void splitByDepartment() {
+        if (manifest == null) {
+            manifest = ShardManifest.create(dataFile);
+            splitting = true;
+        }
+    }
+
+    synchronized Save prepare(StudentStore students) throws IOException {
+        if (manifest != null) {
+            return prepareShards(students);
+        }
+        if (needsFullSave()) {
+            return new Save(students, students.snapshot(), null, null);
+        }
+        return new Save(students, null, students.dirtyCopies(), null);
+    }
+
+    private synchronized boolean needsFullSave() {
+        return deltaGeneration == 0 || deltaSize > Math.max(DELTA_MIN_COMPACT, baseSize / 4);
+    }
+
+    // Changed students are sorted out by department, and the shards saved in
+    // full share one snapshot. A department without a shard gets a new one.
+    // Every save carries the manifest until one of them has written it; each new
+    // shard is saved in full until written, so the shards it names exist by then.
+    // A split only takes the snapshot: finding the departments takes a pass over
+    // every student, which writeShards() makes.
+    private Save prepareShards(StudentStore students) throws IOException {
+        if (splitting) {
+            return new Save(students, students.snapshot());
+        }
+        Map<String, List<Student>> changed = new TreeMap<>();
+        for (Student copy : students.dirtyCopies()) {
+            changed.computeIfAbsent(copy.getDepartment(), k -> new ArrayList<>()).add(copy);
+        }
+        Set<String> saved = changed.keySet();
+        for (String shard : saved) {
+            if (!shards.containsKey(shard) && manifest.shard(shard) != null) {
+                throw new IOException("Department " + shard + " was not opened, so its students cannot be saved");
+            }
+        }
+        for (String shard : saved) {
+            if (!shards.containsKey(shard)) {
+                shards.put(shard, new StudentSaver(manifest.add(shard), shard, null));
+                manifestVersion++;
+            }
+        }
+
+        List<Save> saves = new ArrayList<>();
+        StudentStore snapshot = null;
+        for (StudentSaver shard : shards.values()) {
+            List<Student> shardChanged = changed.getOrDefault(shard.department, Collections.emptyList());
+            if (shard.needsFullSave()) {
+                if (snapshot == null) {
+                    snapshot = students.snapshot();
+                }
+                saves.add(new Save(students, snapshot, null, shard.department));
+            } else if (!shardChanged.isEmpty()) {
+                saves.add(new Save(students, null, shardChanged, shard.department));
+            }
+        }
+        return new Save(saves, manifestVersion != manifestWritten ? manifest.copy() : null, manifestVersion);
+    }
+
+    // Writes the save and marks what it held as saved in the students it was
+    // prepared from. `progress` wraps the students as they are written.
+    void write(Save save, UnaryOperator<Iterable<Student>> progress) throws IOException {
+        synchronized (writeLock) {
+            if (save.shards != null || save.split) {
+                writeShards(save, progress);
+            } else if (save.isFull()) {
+                int generation = StudentDataFile.write(dataFile, progress.apply(save.snapshot.scan(save.department)));
+                // The new data file already holds everything in the old delta, so a
+                // crash before this reset leaves a delta that no longer matches and is
+                // ignored on the next load.
+                if (delta == null) {
+                    delta = StudentDeltaFile.create(StudentDeltaFile.pathFor(dataFile), generation);
+                } else {
+                    delta.reset(generation);
+                }
+                long size = Files.size(dataFile);
+                written(size);
+                bytesWritten.addAndGet(size + delta.size());
+                markSaved(save.students, save.snapshot.loaded(), save.department);
+            } else if (!save.changed.isEmpty()) {
+                long before = delta.size();
+                delta.append(save.changed);
+                written(baseSize);
+                bytesWritten.addAndGet(delta.size() - before);
+                markSaved(save.students, save.changed, save.department);
+            }
+        }
+    }
+
+    // Lets prepare() see what the files hold now.
+    private void written(long baseSize) throws IOException {
+        int generation = delta.generation();
+        long size = delta.size();
+        synchronized (this) {
+            this.baseSize = baseSize;
+            deltaGeneration = generation;
+            deltaSize = size;
+        }
+    }
+
+    // The shards in parallel, then the manifest once every shard it names has
+    // been written.
+    private void writeShards(Save save, UnaryOperator<Iterable<Student>> progress) throws IOException {
+        List<Save> saves = save.shards;
+        ShardManifest written = save.manifest;
+        int version = save.manifestVersion;
+        if (save.split) {
+            // Every department gets a shard, saved in full.
+            Set<String> found = save.snapshot.countDepartments().keySet();
+            saves = new ArrayList<>();
+            synchronized (this) {
+                for (String shard : found) {
+                    if (!shards.containsKey(shard)) {
+                        shards.put(shard, new StudentSaver(manifest.add(shard), shard, null));
+                        manifestVersion++;
+                    }
+                    saves.add(new Save(save.students, save.snapshot, null, shard));
+                }
+                written = manifest.copy();
+                version = manifestVersion;
+            }
+        }
+        try {
+            saves.parallelStream().forEach(shard -> {
+                try {
+                    StudentSaver saver = shard(shard.department);
+                    long before = saver.bytesWritten();
+                    saver.write(shard, progress);
+                    bytesWritten.addAndGet(saver.bytesWritten() - before);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (written != null) {
+            written.write();
+            synchronized (this) {
+                manifestWritten = Math.max(manifestWritten, version);
+            }
+        }
+        if (save.split) {
+            closeDelta();
+            Files.deleteIfExists(StudentDeltaFile.pathFor(dataFile));
+            StudentDataFile.delete(dataFile);
+            synchronized (this) {
+                splitting = false;
+            }
+        }
+    }
+
+    private synchronized StudentSaver shard(String department) {
+        return shards.get(department);
+    }
+
+    // Total written by this saver's saves.
+    long bytesWritten() {
+        return bytesWritten.get();
+    }
+
+    private static void markSaved(StudentStore students, Iterable<Student> saved, String department) {
+        for (Student copy : saved) {
+            if (department != null && !department.equals(copy.getDepartment())) {
+                continue;
+            }
+            Student student = students.get(copy.getRollNo());
+            if (student != null) {
+                student.markSaved(copy);
+            }
+        }
+    }
+
+    private void closeDelta() throws IOException {
+        if (delta != null) {
+            delta.close();
+            delta = null;
+        }
+    }
+
+    private void closeShards() throws IOException {
+        List<StudentSaver> open;
+        synchronized (this) {
+            open = new ArrayList<>(shards.values());
+            shards.clear();
+        }
+        for (StudentSaver shard : open) {
+            shard.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            closeDelta();
+            closeShards();
+        }
+    }
+}
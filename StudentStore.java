@@ -0,0 +1,449 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Map of roll number to Student backed by a memory-mapped StudentDataFile, or by
+// several for a store sharded by department (one after another in iteration
+// order). Students in the files are only built when get() or the entry/value
+// views ask for them, and are then kept so that edits made through them stick.
+// Students added after the files were opened live on the heap only.
+//
+// Safe for concurrent use: lookups and iteration do not lock, while adding a
+// student or materializing one from the file takes the store's lock. Subjects
+// are added through Student, which locks per student.
+class StudentStore extends AbstractMap<String, Student> {
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    private final long generation = GENERATIONS.incrementAndGet();
+    private final StudentDataFile[] files;
+    private final int[] fileStarts; // position of each file's first student, then the end
+    // The department all of a file's students are in, e.g. for a shard; null if
+    // not known to be one.
+    private final String[] fileDepartments;
+    private final Map<String, Student> materialized = new ConcurrentHashMap<>();
+    private final Map<String, Integer> addedPositions = new ConcurrentHashMap<>();
+    // Roll numbers added since the file was opened. The student and the slot are
+    // written before the count that covers them.
+    private volatile String[] added = new String[16];
+    private volatile int addedCount;
+
+    StudentStore() {
+        this(new StudentDataFile[0], new String[0]);
+    }
+
+    private StudentStore(StudentDataFile[] files, String[] fileDepartments) {
+        this.files = files;
+        this.fileDepartments = fileDepartments;
+        this.fileStarts = new int[files.length + 1];
+        for (int i = 0; i < files.length; i++) {
+            fileStarts[i + 1] = fileStarts[i] + files[i].size();
+        }
+    }
+
+    static StudentStore open(Path path) throws IOException {
+        return open(path, null);
+    }
+
+    // A file holding only the department's students (any for null), such as a shard.
+    static StudentStore open(Path path, String department) throws IOException {
+        return new StudentStore(new StudentDataFile[] { StudentDataFile.open(path) }, new String[] { department });
+    }
+
+    // One store over the files of several, e.g. the shards of a sharded store,
+    // holding their loaded and added students. The stores are not used afterwards.
+    static StudentStore union(List<StudentStore> stores) {
+        List<StudentDataFile> files = new ArrayList<>();
+        List<String> departments = new ArrayList<>();
+        for (StudentStore store : stores) {
+            files.addAll(Arrays.asList(store.files));
+            departments.addAll(Arrays.asList(store.fileDepartments));
+        }
+        StudentStore union = new StudentStore(files.toArray(new StudentDataFile[0]),
+                departments.toArray(new String[0]));
+        for (StudentStore store : stores) {
+            union.materialized.putAll(store.materialized);
+        }
+        for (StudentStore store : stores) {
+            for (int i = 0; i < store.addedCount; i++) {
+                union.append(store.added[i]);
+            }
+        }
+        return union;
+    }
+
+    // Wraps students that are already on the heap.
+    static StudentStore of(Map<String, Student> students) {
+        StudentStore store = new StudentStore();
+        store.putAll(students);
+        return store;
+    }
+
+    // Distinguishes this store from every other one opened by this process, so
+    // that a student's content stamp identifies its content only together with it.
+    long generation() {
+        return generation;
+    }
+
+    // Generation of the data file this store was opened from, 0 if none or several.
+    int baseGeneration() {
+        return files.length == 1 ? files[0].generation() : 0;
+    }
+
+    private int fileSize() {
+        return fileStarts[files.length];
+    }
+
+    private int fileIndex(Object rollNo) {
+        if (rollNo instanceof String) {
+            for (int i = 0; i < files.length; i++) {
+                int index = files[i].indexOf((String) rollNo);
+                if (index >= 0) {
+                    return fileStarts[i] + index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Which file holds the position; there are only ever a few.
+    private int fileOf(int index) {
+        int i = 0;
+        while (index >= fileStarts[i + 1]) {
+            i++;
+        }
+        return i;
+    }
+
+    private Student fromFile(int index) {
+        int i = fileOf(index);
+        return files[i].materialize(index - fileStarts[i]);
+    }
+
+    private Student viewFromFile(int index) {
+        int i = fileOf(index);
+        return files[i].view(index - fileStarts[i]);
+    }
+
+    @Override
+    public int size() {
+        return fileSize() + addedCount;
+    }
+
+    @Override
+    public boolean containsKey(Object rollNo) {
+        return materialized.containsKey(rollNo) || fileIndex(rollNo) >= 0;
+    }
+
+    @Override
+    public Student get(Object rollNo) {
+        Student student = materialized.get(rollNo);
+        return student != null ? student : materialize(rollNo);
+    }
+
+    // Under the lock so that a snapshot never misses a student that has been
+    // handed out (and so may have been edited).
+    private synchronized Student materialize(Object rollNo) {
+        Student student = materialized.get(rollNo);
+        if (student == null) {
+            int index = fileIndex(rollNo);
+            if (index >= 0) {
+                student = fromFile(index);
+                materialized.put(student.getRollNo(), student);
+            }
+        }
+        return student;
+    }
+
+    @Override
+    public synchronized Student put(String rollNo, Student student) {
+        Student previous = get(rollNo);
+        materialized.put(rollNo, student);
+        if (previous == null) {
+            append(rollNo);
+        }
+        return previous;
+    }
+
+    // Atomic, for several writers adding the same roll number.
+    @Override
+    public synchronized Student putIfAbsent(String rollNo, Student student) {
+        Student previous = get(rollNo);
+        if (previous == null) {
+            materialized.put(rollNo, student);
+            append(rollNo);
+        }
+        return previous;
+    }
+
+    private void append(String rollNo) {
+        int count = addedCount;
+        String[] current = added;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+            added = current;
+        }
+        current[count] = rollNo;
+        addedPositions.put(rollNo, fileSize() + count);
+        addedCount = count + 1;
+    }
+
+    // Copy that later edits to this store do not affect. Only the students already
+    // on the heap are copied, each under its own lock; the rest are read from the
+    // same immutable mapping. No students are added or materialized meanwhile.
+    synchronized StudentStore snapshot() {
+        StudentStore copy = new StudentStore(files, fileDepartments);
+        for (Student student : materialized.values()) {
+            copy.materialized.put(student.getRollNo(), student.copy());
+        }
+        copy.added = Arrays.copyOf(added, Math.max(addedCount, 1));
+        copy.addedCount = addedCount;
+        copy.addedPositions.putAll(addedPositions);
+        return copy;
+    }
+
+    // Copies of the students changed since they were last saved, each holding
+    // only its changed semesters, in iteration order so that replaying them adds
+    // new students in the same order. Students still in the file are unchanged,
+    // so only the ones on the heap are looked at.
+    synchronized List<Student> dirtyCopies() {
+        List<Student> dirty = new ArrayList<>();
+        for (Student student : materialized.values()) {
+            if (student.isDirty()) {
+                dirty.add(student.dirtyCopy());
+            }
+        }
+        dirty.sort(Comparator.comparingInt(student -> indexOf(student.getRollNo())));
+        return dirty;
+    }
+
+    // The students on the heap; in a snapshot, the copies of every student that
+    // may have changed.
+    Collection<Student> loaded() {
+        return Collections.unmodifiableCollection(materialized.values());
+    }
+
+    // Position of the student in iteration order, or -1. Positions do not change
+    // while the store is open.
+    int indexOf(String rollNo) {
+        Integer position = addedPositions.get(rollNo);
+        return position != null ? position : fileIndex(rollNo);
+    }
+
+    // Positional access in iteration order (the file's students by roll number,
+    // then the ones added since), for table models.
+    String keyAt(int index) {
+        if (index < fileSize()) {
+            int i = fileOf(index);
+            return files[i].rollNo(index - fileStarts[i]);
+        }
+        Objects.checkIndex(index - fileSize(), addedCount);
+        return added[index - fileSize()];
+    }
+
+    // The student at the position, read in place from the file without being
+    // kept if it has not been loaded, for passes that only read. Such a student
+    // adds nothing to the GradeStore, so passes over the whole store leave
+    // nothing behind.
+    Student studentAt(int index) {
+        Student student = materialized.get(keyAt(index));
+        return student != null ? student : viewFromFile(index);
+    }
+
+    // A copy of the student at the position that later edits do not change. One
+    // not loaded is read in place, as studentAt() does, and not kept.
+    Student copyAt(int index) {
+        Student student = materialized.get(keyAt(index));
+        return student != null ? student.copy() : viewFromFile(index);
+    }
+
+    // Content stamp of the student at the position without building it: one not
+    // loaded is as the file has it, unchanged since it was read.
+    long contentStampAt(int index) {
+        Student student = materialized.get(keyAt(index));
+        return student != null ? student.contentStamp() : Student.contentStamp(0);
+    }
+
+    // Name and department never change, so file rows are read from the file even
+    // when the student has been materialized.
+    String nameAt(int index) {
+        if (index < fileSize()) {
+            int i = fileOf(index);
+            return files[i].name(index - fileStarts[i]);
+        }
+        return materialized.get(keyAt(index)).getName();
+    }
+
+    String departmentAt(int index) {
+        if (index < fileSize()) {
+            int i = fileOf(index);
+            return files[i].department(index - fileStarts[i]);
+        }
+        return materialized.get(keyAt(index)).getDepartment();
+    }
+
+    // Students per department, in one pass; files known to hold one department
+    // are counted whole.
+    Map<String, Integer> countDepartments() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (int i = 0; i < files.length; i++) {
+            if (fileDepartments[i] != null) {
+                counts.merge(fileDepartments[i], files[i].size(), Integer::sum);
+                continue;
+            }
+            for (int index = fileStarts[i]; index < fileStarts[i + 1]; index++) {
+                counts.merge(departmentAt(index), 1, Integer::sum);
+            }
+        }
+        for (int index = fileSize(); index < size(); index++) {
+            counts.merge(departmentAt(index), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    // The first position from `index` on of a student in the department (any for
+    // null), or size(). Files known to hold another department are skipped whole.
+    private int nextInDepartment(int index, String department) {
+        while (department != null && index < size()) {
+            if (index < fileSize()) {
+                int file = fileOf(index);
+                if (fileDepartments[file] != null) {
+                    if (fileDepartments[file].equals(department)) {
+                        return index;
+                    }
+                    index = fileStarts[file + 1];
+                    continue;
+                }
+            }
+            if (department.equals(departmentAt(index))) {
+                return index;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    // Visits every student without keeping the ones that were not already loaded,
+    // for passes such as saving that only read.
+    Iterable<Student> scan() {
+        return scan(null);
+    }
+
+    // Only the department's students (every student for null); the others are
+    // skipped without being built. For a shard's department that is the shard's
+    // file and the students added to it.
+    Iterable<Student> scan(String department) {
+        return () -> new Iterator<Student>() {
+            private int next = nextInDepartment(0, department);
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Student student = studentAt(next);
+                next = nextInDepartment(next + 1, department);
+                return student;
+            }
+        };
+    }
+
+    interface RowVisitor {
+        void visit(int index, String department, int semester, String subject, double marks, double maxMarks,
+                double passingPercentage);
+    }
+
+    // Visits every subject row of every student, read from the mapped file for
+    // students that have not been materialized.
+    void forEachRow(RowVisitor visitor) {
+        forEachRow(0, size(), visitor);
+    }
+
+    // The rows of the students at positions [from, to). Slices of a snapshot can
+    // be visited from several threads at once.
+    void forEachRow(int from, int to, RowVisitor visitor) {
+        for (int i = from; i < to; i++) {
+            Student student = materialized.get(keyAt(i));
+            if (student == null) {
+                int file = fileOf(i);
+                files[file].forEachRow(i - fileStarts[file], i, visitor);
+                continue;
+            }
+            for (Map.Entry<Integer, List<Subject>> entry : student.getSemesterSubjects().entrySet()) {
+                for (Subject subject : entry.getValue()) {
+                    visitor.visit(i, student.getDepartment(), entry.getKey(), subject.getName(),
+                            subject.getMarks(), subject.getMaxMarks(), subject.getPassingPercentage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public int size() {
+                return StudentStore.this.size();
+            }
+
+            @Override
+            public boolean contains(Object rollNo) {
+                return containsKey(rollNo);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size();
+                    }
+
+                    @Override
+                    public String next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return keyAt(index++);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, Student>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Student>>() {
+            @Override
+            public int size() {
+                return StudentStore.this.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, Student>> iterator() {
+                Iterator<String> keys = keySet().iterator();
+                return new Iterator<Map.Entry<String, Student>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Student> next() {
+                        String rollNo = keys.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(rollNo, get(rollNo));
+                    }
+                };
+            }
+        };
+    }
+}
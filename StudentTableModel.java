@@ -0,0 +1,67 @@
+import javax.swing.table.AbstractTableModel;
+
+// Reads rows straight from the StudentStore instead of copying them into Vectors.
+class StudentTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = { "Roll No", "Name", "Department" };
+
+    private StudentStore students;
+    private int[] filter; // store positions shown, or null for all
+
+    StudentTableModel(StudentStore students) {
+        this.students = students;
+    }
+
+    void setStudents(StudentStore students) {
+        this.students = students;
+        this.filter = null;
+        fireTableDataChanged();
+    }
+
+    void setFilter(int[] positions) {
+        this.filter = positions;
+        fireTableDataChanged();
+    }
+
+    boolean isFiltered() {
+        return filter != null;
+    }
+
+    // Call after the student has been put into the store; a filtered view is
+    // refreshed by the caller re-running its search instead.
+    void studentAdded() {
+        if (filter == null) {
+            int row = students.size() - 1;
+            fireTableRowsInserted(row, row);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return filter == null ? students.size() : filter.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (filter != null) {
+            row = filter[row];
+        }
+        switch (column) {
+            case 0:
+                return students.keyAt(row);
+            case 1:
+                return students.nameAt(row);
+            default:
+                return students.departmentAt(row);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.*;
+import java.util.List;
+
+// Marks and grade points of one student per semester and overall. Student keeps
+// one up to date as subjects are added, so reports and rankings do not sum the
+// rows again. Immutable; every change makes a new one.
+//
+// Grade points are on the ten-point scale (A+ 10, A 9, B 8, C 7, D 6, F 0).
+// Subjects carry no credits, so a semester's GPA is the mean over its subjects
+// and the CGPA the mean over all of them. Totals made before the last re-grade
+// are stale, as the grade points have changed.
+final class StudentTotals {
+    private final int[] semesters; // ascending
+    private final double[] marks;
+    private final double[] maxMarks;
+    private final int[] points;
+    private final int[] counts;
+    private final int gradingVersion;
+
+    private StudentTotals(int[] semesters, double[] marks, double[] maxMarks, int[] points, int[] counts,
+            int gradingVersion) {
+        this.semesters = semesters;
+        this.marks = marks;
+        this.maxMarks = maxMarks;
+        this.points = points;
+        this.counts = counts;
+        this.gradingVersion = gradingVersion;
+    }
+
+    static StudentTotals of(Map<Integer, List<Subject>> semesterSubjects) {
+        StudentTotals totals = new StudentTotals(new int[0], new double[0], new double[0], new int[0], new int[0],
+                GradeStore.SHARED.gradingVersion());
+        for (Map.Entry<Integer, List<Subject>> entry : semesterSubjects.entrySet()) {
+            totals = totals.withSemester(entry.getKey(), entry.getValue());
+        }
+        return totals;
+    }
+
+    // With one more row in the semester; sums in the order rows are appended.
+    StudentTotals plus(int semester, int row) {
+        GradeStore grades = GradeStore.SHARED;
+        StudentTotals updated = withSlot(semester);
+        int slot = updated.slot(semester);
+        updated.marks[slot] += grades.marks(row);
+        updated.maxMarks[slot] += grades.maxMarks(row);
+        updated.points[slot] += GradeStore.GRADE_POINTS[grades.gradeCode(row)];
+        updated.counts[slot]++;
+        return updated;
+    }
+
+    // With the semester's totals replaced by those of the given subjects.
+    StudentTotals withSemester(int semester, List<Subject> subjects) {
+        SubjectList list = SubjectList.of(subjects);
+        GradeRows grades = list.grades();
+        StudentTotals updated = withSlot(semester);
+        int slot = updated.slot(semester);
+        updated.marks[slot] = 0;
+        updated.maxMarks[slot] = 0;
+        updated.points[slot] = 0;
+        updated.counts[slot] = list.size();
+        for (int i = 0; i < list.size(); i++) {
+            int row = list.row(i);
+            updated.marks[slot] += grades.marks(row);
+            updated.maxMarks[slot] += grades.maxMarks(row);
+            updated.points[slot] += GradeStore.GRADE_POINTS[grades.gradeCode(row)];
+        }
+        return updated;
+    }
+
+    // A copy that has a slot for the semester.
+    private StudentTotals withSlot(int semester) {
+        int slot = slot(semester);
+        if (slot >= 0) {
+            return new StudentTotals(semesters, marks.clone(), maxMarks.clone(), points.clone(), counts.clone(),
+                    gradingVersion);
+        }
+        int at = -slot - 1;
+        return new StudentTotals(insert(semesters, at, semester), insert(marks, at), insert(maxMarks, at),
+                insert(points, at, 0), insert(counts, at, 0), gradingVersion);
+    }
+
+    private static int[] insert(int[] values, int at, int value) {
+        int[] copy = new int[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, at);
+        copy[at] = value;
+        System.arraycopy(values, at, copy, at + 1, values.length - at);
+        return copy;
+    }
+
+    private static double[] insert(double[] values, int at) {
+        double[] copy = new double[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, at);
+        System.arraycopy(values, at, copy, at + 1, values.length - at);
+        return copy;
+    }
+
+    boolean isCurrent() {
+        return gradingVersion == GradeStore.SHARED.gradingVersion();
+    }
+
+    private int slot(int semester) {
+        return Arrays.binarySearch(semesters, semester);
+    }
+
+    int semesterCount() {
+        return semesters.length;
+    }
+
+    boolean hasSemester(int semester) {
+        return slot(semester) >= 0;
+    }
+
+    // Number of subjects these totals cover, 0 for an unknown semester.
+    int subjects(int semester) {
+        int slot = slot(semester);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    double marks(int semester) {
+        int slot = slot(semester);
+        return slot < 0 ? 0 : marks[slot];
+    }
+
+    double maxMarks(int semester) {
+        int slot = slot(semester);
+        return slot < 0 ? 0 : maxMarks[slot];
+    }
+
+    double percentage(int semester) {
+        return (marks(semester) / maxMarks(semester)) * 100;
+    }
+
+    // NaN for a semester without subjects.
+    double gpa(int semester) {
+        int slot = slot(semester);
+        return slot < 0 ? Double.NaN : (double) points[slot] / counts[slot];
+    }
+
+    int subjects() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    double marks() {
+        double total = 0;
+        for (double value : marks) {
+            total += value;
+        }
+        return total;
+    }
+
+    double maxMarks() {
+        double total = 0;
+        for (double value : maxMarks) {
+            total += value;
+        }
+        return total;
+    }
+
+    double percentage() {
+        return (marks() / maxMarks()) * 100;
+    }
+
+    // NaN for a student without subjects.
+    double cgpa() {
+        int total = 0;
+        for (int value : points) {
+            total += value;
+        }
+        return (double) total / subjects();
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.*;
+
+// View of one subject row, normally in the shared GradeStore.
+class Subject implements Serializable {
+    private static final long serialVersionUID = 89200106996543421L;
+
+    // Field layout of the original class, kept so student_data.ser stays readable.
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("marks", double.class),
+            new ObjectStreamField("maxMarks", double.class),
+            new ObjectStreamField("passingPercentage", double.class),
+            new ObjectStreamField("percentage", double.class),
+            new ObjectStreamField("grade", String.class),
+            new ObjectStreamField("status", String.class)
+    };
+
+    private transient GradeRows grades;
+    private transient int row;
+
+    public Subject(String name, double marks, double maxMarks, double passingPercentage) {
+        this.grades = GradeStore.SHARED;
+        this.row = GradeStore.SHARED.add(name, marks, maxMarks, passingPercentage);
+    }
+
+    Subject(int row) {
+        this(GradeStore.SHARED, row);
+    }
+
+    Subject(GradeRows grades, int row) {
+        this.grades = grades;
+        this.row = row;
+    }
+
+    GradeRows grades() {
+        return grades;
+    }
+
+    int row() {
+        return row;
+    }
+
+    // The row in the shared GradeStore, added there if this subject is read from
+    // elsewhere.
+    int sharedRow() {
+        if (grades == GradeStore.SHARED) {
+            return row;
+        }
+        return GradeStore.SHARED.add(getName(), getMarks(), getMaxMarks(), getPassingPercentage());
+    }
+
+    public String getName() {
+        return grades.name(row);
+    }
+
+    public double getMarks() {
+        return grades.marks(row);
+    }
+
+    public double getMaxMarks() {
+        return grades.maxMarks(row);
+    }
+
+    public double getPassingPercentage() {
+        return grades.passingPercentage(row);
+    }
+
+    public double getPercentage() {
+        return grades.percentage(row);
+    }
+
+    public String getGrade() {
+        return GradeStore.GRADES[grades.gradeCode(row)];
+    }
+
+    public String getStatus() {
+        return GradeStore.STATUSES[grades.statusCode(row)];
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", getName());
+        fields.put("marks", getMarks());
+        fields.put("maxMarks", getMaxMarks());
+        fields.put("passingPercentage", getPassingPercentage());
+        fields.put("percentage", getPercentage());
+        fields.put("grade", getGrade());
+        fields.put("status", getStatus());
+        out.writeFields();
+    }
+
+    // Grade and status are recomputed rather than trusted from the stream. A
+    // legacy file being converted keeps its rows in a GradeStore of its own.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        GradeStore store = in instanceof StudentDataFile.LegacyInput ? ((StudentDataFile.LegacyInput) in).grades
+                : GradeStore.SHARED;
+        grades = store;
+        row = store.add((String) fields.get("name", null),
+                fields.get("marks", 0.0),
+                fields.get("maxMarks", 0.0),
+                fields.get("passingPercentage", 0.0));
+    }
+}
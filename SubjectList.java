@@ -0,0 +1,124 @@
+import java.util.*;
+import java.util.List;
+
+// Subjects of one semester as row numbers, normally in the shared GradeStore;
+// get() hands out flyweights. Read-only to everyone but the owning Student,
+// which appends under its lock, and only to a list over the shared store.
+// A row is written before the size that covers it, so readers that read the
+// size first see a consistent prefix without locking.
+class SubjectList extends AbstractList<Subject> implements RandomAccess {
+    private final GradeRows grades;
+    private volatile int[] rows;
+    private volatile int size;
+    private int savedSize = -1; // rows on disk; -1 until first saved
+
+    SubjectList() {
+        this(GradeStore.SHARED);
+    }
+
+    SubjectList(GradeRows grades) {
+        this.grades = grades;
+        this.rows = new int[4];
+    }
+
+    private SubjectList(GradeRows grades, int[] rows, int size) {
+        this.grades = grades;
+        this.rows = rows;
+        this.size = size;
+    }
+
+    // The subjects' rows, in the store they come from (one for all of them).
+    static SubjectList of(List<Subject> subjects) {
+        if (subjects instanceof SubjectList) {
+            return (SubjectList) subjects;
+        }
+        SubjectList list = new SubjectList(subjects.isEmpty() ? GradeStore.SHARED : subjects.get(0).grades());
+        for (Subject subject : subjects) {
+            if (subject.grades() != list.grades) {
+                throw new IllegalArgumentException("Subjects from different stores");
+            }
+            list.append(subject.row());
+        }
+        return list;
+    }
+
+    GradeRows grades() {
+        return grades;
+    }
+
+    boolean isShared() {
+        return grades == GradeStore.SHARED;
+    }
+
+    // This list, or if its rows are read from elsewhere a copy with them added to
+    // the shared GradeStore, which can then be appended to. Saved state carries over.
+    SubjectList shared() {
+        if (isShared()) {
+            return this;
+        }
+        int count = size;
+        SubjectList copy = new SubjectList(GradeStore.SHARED, new int[Math.max(count, 1)], 0);
+        for (int i = 0; i < count; i++) {
+            copy.append(get(i).sharedRow());
+        }
+        copy.savedSize = savedSize;
+        return copy;
+    }
+
+    @Override
+    public Subject get(int index) {
+        return new Subject(grades, row(index));
+    }
+
+    int row(int index) {
+        Objects.checkIndex(index, size);
+        return rows[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Returns the position of the appended row. Callers serialize appends.
+    int append(int row) {
+        int position = size;
+        int[] current = rows;
+        if (position == current.length) {
+            current = Arrays.copyOf(current, position * 2);
+            rows = current;
+        }
+        current[position] = row;
+        size = position + 1;
+        return position;
+    }
+
+    SubjectList copy() {
+        int count = size;
+        return new SubjectList(grades, Arrays.copyOf(rows, Math.max(count, 1)), count);
+    }
+
+    // Dirty tracking for differential saves, under the owning Student's lock.
+    boolean isSaved() {
+        return savedSize == size;
+    }
+
+    void markSaved(int savedSize) {
+        this.savedSize = savedSize;
+    }
+
+    // True if the other list's rows are the first rows of this one, i.e. this
+    // list only grew since the other was copied from it.
+    boolean startsWith(SubjectList other) {
+        int count = other.size;
+        if (count > size || other.grades != grades) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (rows[i] != other.rows[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+// The application side of the JMH suite in jmh/bench: a store generated as
+// GradeBenchmark's pipeline scenarios do, on the heap and in a mapped data file,
+// and one pipeline stage per method. Loaded by name from PipelineBenchmark.
+public final class JmhPipeline implements bench.Pipeline {
+    private final Path dir;
+    private final Path sheet;
+    private final Path dat;
+    private final Path saved;
+    private final Path report;
+    private final StudentStore heap;
+    private final StudentStore mapped;
+    private final ReportFormatter formatter = new ReportFormatter();
+    private final StringBuilder text = new StringBuilder();
+    private final StudentTableModel studentModel;
+    private final GradesTableModel gradesModel = new GradesTableModel();
+
+    public JmhPipeline(int students) throws IOException {
+        dir = Files.createTempDirectory("grade-jmh");
+        sheet = dir.resolve("sheet.csv");
+        dat = dir.resolve("students.dat");
+        saved = dir.resolve("saved.dat");
+        report = dir.resolve("report.txt");
+        heap = StudentStore.of(GradeBenchmark.generate(students, GradeBenchmark.SUBJECTS_PER_STUDENT, 42));
+        GradeBenchmark.writeSheet(sheet, heap);
+        StudentDataFile.write(dat, heap.scan());
+        mapped = StudentStore.open(dat);
+        studentModel = new StudentTableModel(mapped);
+    }
+
+    @Override
+    public void ingest() throws IOException {
+        new GradeBatch(new StudentStore()).importSheet(sheet);
+    }
+
+    // To a file of its own, so the mapped one stays as it is.
+    @Override
+    public int save() throws IOException {
+        return StudentDataFile.write(saved, heap.scan());
+    }
+
+    @Override
+    public Object loadMapped() throws IOException {
+        return StudentStore.open(dat);
+    }
+
+    @Override
+    public Object loadMaterialized() throws IOException {
+        return StudentDataFile.read(dat);
+    }
+
+    @Override
+    public long reportFormat() {
+        long length = 0;
+        for (Student student : mapped.scan()) {
+            text.setLength(0);
+            formatter.appendExport(text, student);
+            length += text.length();
+        }
+        return length;
+    }
+
+    @Override
+    public void reportExport() throws IOException {
+        new ReportExporter(report, false, false).export(mapped.scan(), written -> {
+        });
+    }
+
+    @Override
+    public Object statistics() {
+        return GradeStatistics.build(mapped);
+    }
+
+    @Override
+    public void studentTable() {
+        studentModel.setStudents(mapped);
+        GradeBenchmark.readCells(studentModel);
+    }
+
+    @Override
+    public void gradesTable() {
+        for (Student student : mapped.scan()) {
+            for (List<Subject> subjects : student.getSemesterSubjects().values()) {
+                gradesModel.setSubjects(subjects);
+                GradeBenchmark.readCells(gradesModel);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(sheet);
+        StudentDataFile.delete(dat);
+        StudentDataFile.delete(saved);
+        Files.deleteIfExists(report);
+        Files.deleteIfExists(dir);
+    }
+}
@@ -0,0 +1,29 @@
+package bench;
+
+import java.io.IOException;
+
+// The grade pipeline over one synthetic store, implemented by JmhPipeline in the
+// application's default package, which JMH does not accept benchmarks in and
+// code in a package cannot name.
+public interface Pipeline extends AutoCloseable {
+    void ingest() throws IOException;
+
+    int save() throws IOException;
+
+    Object loadMapped() throws IOException;
+
+    Object loadMaterialized() throws IOException;
+
+    long reportFormat();
+
+    void reportExport() throws IOException;
+
+    Object statistics();
+
+    void studentTable();
+
+    void gradesTable();
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,82 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// The grade pipeline at 1k to 1M synthetic students, each size in a fork of its
+// own. mvn -Pjmh verify runs it with -prof gc, whose gc.alloc.rate.norm is the
+// bytes allocated per operation; a subset runs with, e.g.,
+// java -jar target/benchmarks.jar -prof gc -p students=1000,10000 report
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Djava.awt.headless=true" })
+public class PipelineBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int students;
+
+    private Pipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        pipeline = Class.forName("JmhPipeline").asSubclass(Pipeline.class).getConstructor(int.class)
+                .newInstance(students);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pipeline.close();
+    }
+
+    // Every run adds its rows to the shared GradeStore for good, so only a few
+    // are made.
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void ingest() throws Exception {
+        pipeline.ingest();
+    }
+
+    @Benchmark
+    public int save() throws Exception {
+        return pipeline.save();
+    }
+
+    @Benchmark
+    public Object loadMapped() throws Exception {
+        return pipeline.loadMapped();
+    }
+
+    @Benchmark
+    public Object loadMaterialized() throws Exception {
+        return pipeline.loadMaterialized();
+    }
+
+    @Benchmark
+    public long reportFormat() {
+        return pipeline.reportFormat();
+    }
+
+    @Benchmark
+    public void reportExport() throws Exception {
+        pipeline.reportExport();
+    }
+
+    @Benchmark
+    public Object statistics() {
+        return pipeline.statistics();
+    }
+
+    @Benchmark
+    public void studentTable() {
+        pipeline.studentTable();
+    }
+
+    @Benchmark
+    public void gradesTable() {
+        pipeline.gradesTable();
+    }
+}